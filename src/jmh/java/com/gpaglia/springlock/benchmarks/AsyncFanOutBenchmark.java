@@ -0,0 +1,168 @@
+package com.gpaglia.springlock.benchmarks;
+
+import com.gpaglia.springlock.Application;
+import com.gpaglia.springlock.async.AsyncRepositories;
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * A request handler loading {@code fanOut} aggregates, one after the other on the
+ * calling thread or concurrently through {@link AsyncRepositories}.
+ *
+ * <p>The in-memory database answers without any network round trip, which is what
+ * the concurrent loads overlap: {@code latencyMs} adds it to each load, as a sleep
+ * in its transaction.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class AsyncFanOutBenchmark {
+
+  /** Number of parents seeded in the database. */
+  static final int PARENTS = 1_000;
+
+  /** Number of children of each parent. */
+  static final int CHILDREN = 5;
+
+  /**
+   * The spring context and the seeded aggregates.
+   */
+  @State(Scope.Benchmark)
+  public static class Context {
+    @Param({ "1", "8", "32" })
+    int fanOut;
+
+    @Param({ "0", "5" })
+    int latencyMs;
+
+    ConfigurableApplicationContext ctx;
+    ParentRepository parentRepo;
+    AsyncRepositories async;
+    TransactionTemplate readOnlyTx;
+
+    /**
+     * Start the application and seed the parents with their children.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+      ctx = new SpringApplicationBuilder(Application.class)
+          .web(WebApplicationType.NONE)
+          .logStartupInfo(false)
+          .run();
+      parentRepo = ctx.getBean(ParentRepository.class);
+      async = ctx.getBean(AsyncRepositories.class);
+      readOnlyTx = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+      readOnlyTx.setReadOnly(true);
+
+      EntityManager em = ctx.getBean(EntityManagerFactory.class).createEntityManager();
+      try {
+        em.getTransaction().begin();
+        for (long id = 1; id <= PARENTS; id++) {
+          Parent p = new Parent(id, "Parent_" + id);
+          for (long c = 1; c <= CHILDREN; c++) {
+            new Child(id * 1000 + c, "Child_" + c).setParent(p);
+          }
+          em.persist(p);
+          if (id % 50 == 0) {
+            em.flush();
+            em.clear();
+          }
+        }
+        em.getTransaction().commit();
+      } finally {
+        em.close();
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      ctx.close();
+    }
+
+    Optional<Parent> load(ParentRepository repo, Long id) {
+      if (latencyMs > 0) {
+        try {
+          Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return repo.findAggregateById(id);
+    }
+  }
+
+  private static Long nextId() {
+    return ThreadLocalRandom.current().nextLong(1, PARENTS + 1);
+  }
+
+  /**
+   * Load the aggregates one after the other, each in a read only transaction.
+   *
+   * @param c the context
+   * @return the loaded parents
+   */
+  @Benchmark
+  public List<Parent> sync(Context c) {
+    final List<Parent> parents = new ArrayList<>(c.fanOut);
+    for (int i = 0; i < c.fanOut; i++) {
+      final Long id = nextId();
+      parents.add(c.readOnlyTx.execute(status -> c.load(c.parentRepo, id)).get());
+    }
+    return parents;
+  }
+
+  /**
+   * Load the aggregates concurrently, then wait for all of them.
+   *
+   * @param c the context
+   * @return the loaded parents
+   */
+  @Benchmark
+  public List<Parent> async(Context c) {
+    final List<CompletableFuture<Optional<Parent>>> loads = new ArrayList<>(c.fanOut);
+    for (int i = 0; i < c.fanOut; i++) {
+      final Long id = nextId();
+      loads.add(c.async.parents(repo -> c.load(repo, id)));
+    }
+
+    final List<Parent> parents = new ArrayList<>(c.fanOut);
+    for (CompletableFuture<Optional<Parent>> load : loads) {
+      parents.add(load.join().get());
+    }
+    return parents;
+  }
+}
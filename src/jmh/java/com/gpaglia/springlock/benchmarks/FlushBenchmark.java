@@ -0,0 +1,141 @@
+package com.gpaglia.springlock.benchmarks;
+
+import com.gpaglia.springlock.Application;
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.Parent;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Flush time of a persistence context holding 100k managed entities.
+ *
+ * <p>Each operation changes {@code dirty} of the loaded children and flushes. Without
+ * bytecode enhancement the flush compares every managed entity with its load-time
+ * snapshot; with it, only the entities flagged by their dirty tracker are visited.
+ * Compare {@code gradle jmh -PjmhArgs=FlushBenchmark} with the same run plus
+ * {@code -PnoEnhancement}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushBenchmark {
+
+  /** Number of parents seeded in the database. */
+  static final int PARENTS = 1_000;
+
+  /** Number of children of each parent, 100k entities in all. */
+  static final int CHILDREN = 99;
+
+  /**
+   * The spring context and the seeded entities.
+   */
+  @State(Scope.Benchmark)
+  public static class Context {
+    ConfigurableApplicationContext ctx;
+    EntityManagerFactory emf;
+
+    /**
+     * Start the application and seed the parents with their children.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+      ctx = new SpringApplicationBuilder(Application.class)
+          .web(WebApplicationType.NONE)
+          .logStartupInfo(false)
+          .run();
+      emf = ctx.getBean(EntityManagerFactory.class);
+
+      EntityManager em = emf.createEntityManager();
+      try {
+        em.getTransaction().begin();
+        for (long id = 1; id <= PARENTS; id++) {
+          Parent p = new Parent(id, "Parent_" + id);
+          for (long c = 1; c <= CHILDREN; c++) {
+            new Child(id * 1000 + c, "Child_" + c).setParent(p);
+          }
+          em.persist(p);
+          if (id % 50 == 0) {
+            em.flush();
+            em.clear();
+          }
+        }
+        em.getTransaction().commit();
+      } finally {
+        em.close();
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      ctx.close();
+    }
+  }
+
+  /**
+   * A persistence context with all the entities loaded, in an open transaction that
+   * is rolled back after each iteration.
+   */
+  @State(Scope.Thread)
+  public static class Session {
+    @Param({ "0", "100" })
+    int dirty;
+
+    EntityManager em;
+    List<Child> children;
+    long round;
+
+    @Setup(Level.Iteration)
+    public void open(Context c) {
+      em = c.emf.createEntityManager();
+      em.getTransaction().begin();
+      children = em
+          .createQuery("select c from Child c join fetch c.parent", Child.class)
+          .getResultList();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+      em.getTransaction().rollback();
+      em.close();
+    }
+  }
+
+  /**
+   * Change some children and flush.
+   *
+   * @param s the session
+   */
+  @Benchmark
+  public void flush(Session s) {
+    final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+    final String name = "Child_" + s.round++;
+    for (int i = 0; i < s.dirty; i++) {
+      s.children.get(rnd.nextInt(s.children.size())).setName(name);
+    }
+    s.em.flush();
+  }
+}
@@ -0,0 +1,205 @@
+package com.gpaglia.springlock.benchmarks;
+
+import com.gpaglia.springlock.Application;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.LockStrategy;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares the {@link ParentRepository} lock modes under contention.
+ *
+ * <p>Each operation is one committed transaction that loads a single {@link Parent}
+ * with the given lock mode. Throughput and sampled latency (p99) are reported by JMH,
+ * while the {@code commits} / {@code aborts} auxiliary counters give the abort rate,
+ * i.e. the share of transactions failed by an optimistic or pessimistic lock conflict.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LockModeBenchmark {
+
+  /** The thread counts the benchmark is run at by {@link #main(String[])}. */
+  static final int[] THREADS = { 1, 4, 16, 64 };
+
+  /** Number of parents seeded in the database. */
+  static final int PARENTS = 1024;
+
+  /**
+   * The way a parent is loaded.
+   */
+  public enum LockMode {
+    /** {@code ParentRepository.findByIdForUpdate} with OPTIMISTIC_FORCE_INCREMENT. */
+    FIND_BY_ID,
+    /** {@code ParentRepository.optimisticFindById}. */
+    OPTIMISTIC,
+    /** {@code ParentRepository.pessimisticFindById}. */
+    PESSIMISTIC,
+    /** Plain {@code em.find} without locks. */
+    NONE
+  }
+
+  /**
+   * The way parent ids are picked.
+   */
+  public enum Keys {
+    /** All threads on the same parent. */
+    HOT,
+    /** Ids spread uniformly over all the parents. */
+    UNIFORM
+  }
+
+  /**
+   * The spring context, shared by all the benchmark threads.
+   */
+  @State(Scope.Benchmark)
+  public static class Context {
+    @Param
+    LockMode lockMode;
+
+    @Param
+    Keys keys;
+
+    ConfigurableApplicationContext ctx;
+    ParentRepository parentRepo;
+    EntityManager em;
+    TransactionTemplate tx;
+
+    /**
+     * Start the application and seed the parents.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+      ctx = new SpringApplicationBuilder(Application.class)
+          .web(WebApplicationType.NONE)
+          .logStartupInfo(false)
+          .run();
+
+      parentRepo = ctx.getBean(ParentRepository.class);
+      em = SharedEntityManagerCreator.createSharedEntityManager(
+          ctx.getBean(EntityManagerFactory.class));
+      tx = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+
+      tx.execute(status -> {
+        for (long id = 1; id <= PARENTS; id++) {
+          em.persist(new Parent(id, "Parent_" + id));
+        }
+        return null;
+      });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      ctx.close();
+    }
+
+    long nextId() {
+      return keys == Keys.HOT ? 1L : ThreadLocalRandom.current().nextLong(1, PARENTS + 1);
+    }
+  }
+
+  /**
+   * Per thread transaction outcomes.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Outcomes {
+    public long commits;
+    public long aborts;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      commits = 0;
+      aborts = 0;
+    }
+  }
+
+  /**
+   * Load one parent with the configured lock mode and commit.
+   *
+   * @param c the context
+   * @param o the outcomes
+   * @return the loaded parent
+   */
+  @Benchmark
+  public Parent load(Context c, Outcomes o) {
+    final Long id = c.nextId();
+    try {
+      Parent p = c.tx.execute(status -> {
+        switch (c.lockMode) {
+          case FIND_BY_ID:
+            return c.parentRepo
+                .findByIdForUpdate(id, LockStrategy.OPTIMISTIC_FORCE_INCREMENT)
+                .orElse(null);
+          case OPTIMISTIC:
+            return c.parentRepo.optimisticFindById(id).orElse(null);
+          case PESSIMISTIC:
+            return c.parentRepo.pessimisticFindById(id).orElse(null);
+          default:
+            return c.em.find(Parent.class, id);
+        }
+      });
+      o.commits++;
+      return p;
+    } catch (ConcurrencyFailureException e) {
+      o.aborts++;
+      return null;
+    }
+  }
+
+  /**
+   * Run the benchmark at 1, 4, 16 and 64 threads.
+   *
+   * @param args optional output directory for the JSON results
+   * @throws RunnerException if the run fails
+   */
+  public static void main(String[] args) throws RunnerException {
+    File out = new File(args.length > 0 ? args[0] : "build/reports/jmh");
+    out.mkdirs();
+
+    for (int threads : THREADS) {
+      Options opts = new OptionsBuilder()
+          .include(LockModeBenchmark.class.getSimpleName())
+          .threads(threads)
+          .resultFormat(ResultFormatType.JSON)
+          .result(new File(out, "lock-modes-" + threads + "t.json").getPath())
+          .build();
+      new Runner(opts).run();
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.gpaglia.springlock.benchmarks;
+
+import com.gpaglia.springlock.Application;
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.metrics.SessionMetricsListener;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares the hikari and dbcp2 connection pools, the former as configured by default
+ * and the latter by its profile, with more threads than connections.
+ *
+ * <p>{@code BORROW} takes a connection and returns it: throughput and sampled latency
+ * are those of the pool alone. The lock workloads are those of {@code SpringLockTest},
+ * a force incremented parent whose child is renamed, on a few hot parents: the
+ * connections are then held through the lock waits. At the end of each trial the
+ * measured connection hold time is turned into a pool size, by little's law.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class PoolBenchmark {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PoolBenchmark.class);
+
+  /** Number of parents seeded in the database, all of them hot. */
+  static final int PARENTS = 16;
+
+  /** Headroom of the suggested pool size over the measured busy connections. */
+  static final double HEADROOM = 1.25;
+
+  /**
+   * The work done with a connection.
+   */
+  public enum Workload {
+    /** Borrow a connection and return it. */
+    BORROW,
+    /** {@code ParentRepository.optimisticFindById} and a child renamed. */
+    OPTIMISTIC,
+    /** {@code ParentRepository.pessimisticFindById} and a child renamed. */
+    PESSIMISTIC
+  }
+
+  /**
+   * The spring context, started with the profile of the pool.
+   */
+  @State(Scope.Benchmark)
+  public static class Context {
+    @Param({ "hikari", "dbcp2" })
+    String pool;
+
+    @Param
+    Workload workload;
+
+    ConfigurableApplicationContext ctx;
+    DataSource dataSource;
+    ParentRepository parentRepo;
+    TransactionTemplate tx;
+    long start;
+    long holdCount;
+    double holdNanos;
+
+    /**
+     * Start the application and seed the parents with a child each.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+      SpringApplicationBuilder app = new SpringApplicationBuilder(Application.class)
+          .web(WebApplicationType.NONE)
+          .logStartupInfo(false);
+      if (!"hikari".equals(pool)) {
+        app.profiles(pool);
+      }
+      ctx = app.run();
+      dataSource = ctx.getBean(DataSource.class);
+      parentRepo = ctx.getBean(ParentRepository.class);
+      tx = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+
+      EntityManager em = ctx.getBean(EntityManagerFactory.class).createEntityManager();
+      try {
+        em.getTransaction().begin();
+        for (long id = 1; id <= PARENTS; id++) {
+          Parent p = new Parent(id, "Parent_" + id);
+          new Child(id * 1000, "Child_" + id).setParent(p);
+          em.persist(p);
+        }
+        em.getTransaction().commit();
+      } finally {
+        em.close();
+      }
+
+      // the seeding is not part of the measure
+      start = System.nanoTime();
+      Timer hold = holdTimer();
+      holdCount = hold != null ? hold.count() : 0;
+      holdNanos = hold != null ? hold.totalTime(TimeUnit.NANOSECONDS) : 0;
+    }
+
+    static Timer holdTimer() {
+      return Metrics.globalRegistry.find(SessionMetricsListener.CONNECTION_HOLD).timer();
+    }
+
+    /**
+     * Log the pool size suggested by the connection hold times, then stop.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      Timer hold = holdTimer();
+      if (hold != null && hold.count() > holdCount) {
+        final long count = hold.count() - holdCount;
+        final double nanos = hold.totalTime(TimeUnit.NANOSECONDS) - holdNanos;
+        // little's law: connections busy = transaction rate * hold time
+        final double busy = nanos / (System.nanoTime() - start);
+        LOGGER.info("{} {}: connection hold mean {} ms over {} transactions;"
+                + " {} connections busy on average, suggested pool size {}",
+            pool, workload, String.format("%.3f", nanos / count / 1e6), count,
+            String.format("%.1f", busy), (int) Math.max(1, Math.ceil(busy * HEADROOM)));
+      }
+      ctx.close();
+    }
+  }
+
+  /**
+   * Per thread transaction outcomes.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Outcomes {
+    public long commits;
+    public long aborts;
+    public long starved;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      commits = 0;
+      aborts = 0;
+      starved = 0;
+    }
+  }
+
+  /**
+   * Run the workload once.
+   *
+   * @param c the context
+   * @param o the outcomes
+   * @return the connection or parent, against dead code elimination
+   * @throws SQLException if the connection cannot be borrowed
+   */
+  @Benchmark
+  public Object run(Context c, Outcomes o) throws SQLException {
+    if (c.workload == Workload.BORROW) {
+      try (Connection con = c.dataSource.getConnection()) {
+        return con;
+      }
+    }
+
+    final Long id = ThreadLocalRandom.current().nextLong(1, PARENTS + 1);
+    try {
+      Parent p = c.tx.execute(status -> {
+        Parent parent = c.workload == Workload.OPTIMISTIC
+            ? c.parentRepo.optimisticFindById(id).get()
+            : c.parentRepo.pessimisticFindById(id).get();
+        parent.getChild(id * 1000).setName("Child_" + System.nanoTime() % 1_000_000);
+        return parent;
+      });
+      o.commits++;
+      return p;
+    } catch (ConcurrencyFailureException e) {
+      o.aborts++;
+      return null;
+    } catch (CannotCreateTransactionException | DataAccessResourceFailureException e) {
+      // no connection within the borrow timeout
+      o.starved++;
+      return null;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.gpaglia.springlock.async;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link AsyncRepositories}, bound to {@code springlock.async.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.async")
+public class AsyncProperties {
+
+  /** Max concurrent repository calls, 0 for the max size of the connection pool. */
+  private int maxConcurrency = 0;
+
+  /** Whether to run the calls on virtual threads, when the runtime has them. */
+  private boolean virtualThreads = true;
+
+  /**
+   * Get the max concurrency.
+   *
+   * @return the max concurrency, 0 for the pool size
+   */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * Set the max concurrency.
+   *
+   * @param maxConcurrency the max concurrency to set, 0 for the pool size
+   */
+  public void setMaxConcurrency(int maxConcurrency) {
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Get whether virtual threads are used when available.
+   *
+   * @return the virtual threads flag
+   */
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /**
+   * Set whether virtual threads are used when available.
+   *
+   * @param virtualThreads the virtual threads flag to set
+   */
+  public void setVirtualThreads(boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+}
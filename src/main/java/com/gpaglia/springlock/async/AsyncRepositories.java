@@ -0,0 +1,225 @@
+package com.gpaglia.springlock.async;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ChildRepository;
+import com.gpaglia.springlock.repositories.GrandChildRepository;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.metadata.CompositeDataSourcePoolMetadataProvider;
+import org.springframework.boot.jdbc.metadata.DataSourcePoolMetadata;
+import org.springframework.boot.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the blocking repository calls off the calling thread, so that a request
+ * fanning out to many aggregate loads runs them concurrently.
+ *
+ * <p>Each call runs in a transaction of its own on the executor, and its result is
+ * detached once the future completes: what is needed must be fetched within the call,
+ * e.g. with {@link ParentRepository#findAggregateById(Long)}. The calls of a caller
+ * transaction do not see its uncommitted changes.
+ *
+ * <p>At most {@link #getMaxConcurrency()} calls run at once, by default the max size of
+ * the connection pool, so that no call holds a thread while waiting for a connection.
+ * The calls run on virtual threads when the runtime has them, bounded by a semaphore,
+ * or else on a fixed pool of platform threads of that size.
+ */
+@Component
+public class AsyncRepositories {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncRepositories.class);
+
+  /** The max concurrency when neither configured nor known from the pool. */
+  static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+  private final ParentRepository parentRepo;
+  private final ChildRepository childRepo;
+  private final GrandChildRepository grandChildRepo;
+  private final TransactionTemplate txTemplate;
+  private final TransactionTemplate readOnlyTxTemplate;
+  private final int maxConcurrency;
+  private final ExecutorService executor;
+
+  /** Bounds the virtual threads, {@code null} on the fixed pool. */
+  private final Semaphore permits;
+
+  @Autowired
+  public AsyncRepositories(
+      ParentRepository parentRepo,
+      ChildRepository childRepo,
+      GrandChildRepository grandChildRepo,
+      PlatformTransactionManager txManager,
+      AsyncProperties props,
+      ObjectProvider<DataSource> dataSource,
+      ObjectProvider<DataSourcePoolMetadataProvider> poolMetadataProviders
+  ) {
+    this.parentRepo = parentRepo;
+    this.childRepo = childRepo;
+    this.grandChildRepo = grandChildRepo;
+    this.txTemplate = new TransactionTemplate(txManager);
+    this.readOnlyTxTemplate = new TransactionTemplate(txManager);
+    this.readOnlyTxTemplate.setReadOnly(true);
+
+    this.maxConcurrency = props.getMaxConcurrency() > 0
+        ? props.getMaxConcurrency()
+        : poolSize(dataSource.getIfUnique(), poolMetadataProviders);
+
+    ExecutorService virtual = props.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+    if (virtual != null) {
+      this.executor = virtual;
+      this.permits = new Semaphore(maxConcurrency);
+    } else {
+      final AtomicInteger count = new AtomicInteger();
+      this.executor = Executors.newFixedThreadPool(maxConcurrency, r -> {
+        Thread t = new Thread(r, "springlock-async-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+      this.permits = null;
+    }
+    LOGGER.info("Async repository calls on {} threads, at most {} at once",
+        virtual != null ? "virtual" : "platform", maxConcurrency);
+  }
+
+  private static int poolSize(
+      DataSource dataSource,
+      ObjectProvider<DataSourcePoolMetadataProvider> poolMetadataProviders
+  ) {
+    if (dataSource != null) {
+      DataSourcePoolMetadata pool = new CompositeDataSourcePoolMetadataProvider(
+          poolMetadataProviders.orderedStream().collect(Collectors.toList()))
+          .getDataSourcePoolMetadata(dataSource);
+      if (pool != null && pool.getMax() != null && pool.getMax() > 0) {
+        return pool.getMax();
+      }
+    }
+    return DEFAULT_MAX_CONCURRENCY;
+  }
+
+  /**
+   * A virtual thread per task executor, looked up reflectively as the build targets
+   * a JDK without them.
+   *
+   * @return the executor, or {@code null} if the runtime has no virtual threads
+   */
+  static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // missing, or a preview feature not enabled
+      return null;
+    }
+  }
+
+  /**
+   * Get the max number of calls running at once.
+   *
+   * @return the max concurrency
+   */
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /**
+   * Get whether the calls run on virtual threads.
+   *
+   * @return true on virtual threads
+   */
+  public boolean isVirtualThreads() {
+    return permits != null;
+  }
+
+  /**
+   * Load a parent with its children, in a read only transaction.
+   *
+   * @param id the parent id
+   * @return the future of the detached parent
+   */
+  public CompletableFuture<Optional<Parent>> findAggregateById(Long id) {
+    return submit(readOnlyTxTemplate, status -> parentRepo.findAggregateById(id));
+  }
+
+  /**
+   * Call the parent repository in a transaction of its own.
+   *
+   * @param <T> the result type
+   * @param call the repository call
+   * @return the future of the result
+   */
+  public <T> CompletableFuture<T> parents(Function<ParentRepository, T> call) {
+    return submit(txTemplate, status -> call.apply(parentRepo));
+  }
+
+  /**
+   * Call the child repository in a transaction of its own.
+   *
+   * @param <T> the result type
+   * @param call the repository call
+   * @return the future of the result
+   */
+  public <T> CompletableFuture<T> children(Function<ChildRepository, T> call) {
+    return submit(txTemplate, status -> call.apply(childRepo));
+  }
+
+  /**
+   * Call the grandchild repository in a transaction of its own.
+   *
+   * @param <T> the result type
+   * @param call the repository call
+   * @return the future of the result
+   */
+  public <T> CompletableFuture<T> grandChildren(Function<GrandChildRepository, T> call) {
+    return submit(txTemplate, status -> call.apply(grandChildRepo));
+  }
+
+  /**
+   * Run several repository calls in one transaction of their own.
+   *
+   * @param <T> the result type
+   * @param action the unit of work
+   * @return the future of the result
+   */
+  public <T> CompletableFuture<T> inTransaction(TransactionCallback<T> action) {
+    return submit(txTemplate, action);
+  }
+
+  private <T> CompletableFuture<T> submit(TransactionTemplate tx, TransactionCallback<T> action) {
+    return CompletableFuture.supplyAsync(() -> {
+      if (permits == null) {
+        return tx.execute(action);
+      }
+
+      permits.acquireUninterruptibly();
+      try {
+        return tx.execute(action);
+      } finally {
+        permits.release();
+      }
+    }, executor);
+  }
+
+  @PreDestroy
+  public void close() {
+    executor.shutdownNow();
+  }
+}
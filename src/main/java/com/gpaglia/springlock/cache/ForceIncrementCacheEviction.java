@@ -0,0 +1,51 @@
+package com.gpaglia.springlock.cache;
+
+import com.gpaglia.springlock.hibernate.LockModes;
+
+import java.io.Serializable;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.cache.spi.CacheImplementor;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+
+/**
+ * Evicts from the second level cache the entities whose version is force incremented.
+ *
+ * <p>{@code OPTIMISTIC_FORCE_INCREMENT} and {@code PESSIMISTIC_FORCE_INCREMENT} bump the
+ * version with a dedicated update which bypasses the cache, so the cached state would
+ * keep the old version: reads would see it and writes based on it would fail their
+ * version check. The entries of the force-locked entities are therefore evicted at
+ * each flush, the one before commit included, and once more after completion, which
+ * drops any stale state put back by readers in between.
+ */
+public class ForceIncrementCacheEviction implements FlushEventListener {
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  public void onFlush(FlushEvent event) {
+    final EventSource session = event.getSession();
+    final CacheImplementor cache = session.getFactory().getCache();
+    final List<Map.Entry<String, Serializable>> evicted = new ArrayList<>();
+
+    for (Map.Entry<Object, EntityEntry> e
+        : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+      final EntityEntry entry = e.getValue();
+      if (entry.getPersister().canWriteToCache()
+          && LockModes.isForceIncrement(entry.getLockMode())) {
+        cache.evictEntityData(entry.getEntityName(), entry.getId());
+        evicted.add(new SimpleImmutableEntry<>(entry.getEntityName(), entry.getId()));
+      }
+    }
+
+    if (!evicted.isEmpty()) {
+      session.getActionQueue().registerProcess((success, s) ->
+          evicted.forEach(k -> cache.evictEntityData(k.getKey(), k.getValue())));
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.gpaglia.springlock.cache;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.hibernate.AppendingIntegratorProvider;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Second level cache of the entities and their collections, enabled by
+ * {@code springlock.cache.enabled=true}.
+ *
+ * <p>Regions live in a dedicated Caffeine JCache manager, each bounded by
+ * {@code springlock.cache.max-size} entries expiring {@code springlock.cache.ttl}
+ * after they are written. Entities are read-write cached: plain finds are served
+ * from the cache, while the lock modes of the {@code ParentRepository} finders
+ * always read the database.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "springlock.cache", name = "enabled", havingValue = "true")
+public class SecondLevelCacheConfiguration {
+
+  /** The cached entity and collection regions. */
+  static final List<String> REGIONS = Arrays.asList(
+      Parent.class.getName(),
+      Parent.class.getName() + ".children",
+      Child.class.getName(),
+      Child.class.getName() + ".grandChildren",
+      GrandChild.class.getName());
+
+  /**
+   * The cache manager of the hibernate regions, private to this context.
+   *
+   * @param props the cache settings
+   * @return the cache manager
+   */
+  @Bean(destroyMethod = "close")
+  public CacheManager hibernateCacheManager(SecondLevelCacheProperties props) {
+    CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+    CacheManager cm = provider.getCacheManager(
+        URI.create("springlock-" + UUID.randomUUID()), provider.getDefaultClassLoader());
+
+    for (String region : REGIONS) {
+      CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+      config.setMaximumSize(OptionalLong.of(props.getMaxSize()));
+      config.setExpireAfterWrite(OptionalLong.of(props.getTtl().toNanos()));
+      config.setStatisticsEnabled(true);
+      cm.createCache(region, config);
+    }
+    return cm;
+  }
+
+  /**
+   * Turn on the hibernate second level cache on the cache manager, and register
+   * the eviction of force incremented entities.
+   *
+   * @param cacheManager the cache manager
+   * @return the customizer
+   */
+  @Bean
+  public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager cacheManager) {
+    return props -> {
+      props.put("hibernate.cache.use_second_level_cache", "true");
+      props.put("hibernate.cache.region.factory_class", "jcache");
+      props.put("hibernate.javax.cache.cache_manager", cacheManager);
+      props.put("hibernate.javax.cache.missing_cache_strategy", "create-warn");
+      props.put("javax.persistence.sharedCache.mode", "ENABLE_SELECTIVE");
+      AppendingIntegratorProvider.append(props, new ForceIncrementIntegrator());
+    };
+  }
+
+  /**
+   * Appends the {@link ForceIncrementCacheEviction} to the flush listeners.
+   */
+  static class ForceIncrementIntegrator implements Integrator {
+
+    @Override
+    public void integrate(
+        Metadata metadata,
+        SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+      serviceRegistry.getService(EventListenerRegistry.class)
+          .appendListeners(EventType.FLUSH, new ForceIncrementCacheEviction());
+    }
+
+    @Override
+    public void disintegrate(
+        SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+      // nothing to release
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.gpaglia.springlock.cache;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the second level cache, bound to {@code springlock.cache.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.cache")
+public class SecondLevelCacheProperties {
+
+  /** Whether the second level cache is enabled. */
+  private boolean enabled = false;
+
+  /** Max entries of each entity and collection region. */
+  private long maxSize = 10_000;
+
+  /** Time to live of the entries after they are written. */
+  private Duration ttl = Duration.ofMinutes(10);
+
+  /**
+   * Get the enabled flag.
+   * 
+   * @return the enabled flag
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Set the enabled flag.
+   * 
+   * @param enabled the enabled flag to set
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Get the max size.
+   * 
+   * @return the max size
+   */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Set the max size.
+   * 
+   * @param maxSize the max size to set
+   */
+  public void setMaxSize(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Get the ttl.
+   * 
+   * @return the ttl
+   */
+  public Duration getTtl() {
+    return ttl;
+  }
+
+  /**
+   * Set the ttl.
+   * 
+   * @param ttl the ttl to set
+   */
+  public void setTtl(Duration ttl) {
+    this.ttl = ttl;
+  }
+}
@@ -1,10 +1,13 @@
 package com.gpaglia.springlock.entities;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.persistence.Access;
 import javax.persistence.AccessType;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -12,10 +15,17 @@ import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.MapKey;
 import javax.persistence.OneToMany;
+import javax.persistence.OrderBy;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
 /**
  * Parent.
  */
@@ -23,6 +33,8 @@ import javax.persistence.Version;
 @Entity
 @Table(name = "CHILDREN")
 @Access(AccessType.FIELD)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Child {
   @Id
   private Long id;
@@ -42,7 +54,11 @@ public class Child {
       mappedBy = "child", 
       cascade = CascadeType.ALL, 
       orphanRemoval = true)
-  private List<GrandChild> grandChildren = new ArrayList<>();
+  @MapKey(name = "id")
+  @OrderBy("id")
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+  @Fetch(FetchMode.SUBSELECT)
+  private Map<Long, GrandChild> grandChildren = new LinkedHashMap<>();
   
   Child() {}
 
@@ -106,7 +122,7 @@ public class Child {
       if (parent.equals(p)) {
         return;
       } else {
-        parent.getChildren().remove(this);
+        parent.removeChild(this);
       }
     }
     
@@ -127,20 +143,42 @@ public class Child {
   }
   
   /**
-   * Get the list of grand children.
+   * Get the grand children, indexed by id: use {@link #addGrandChild} and
+   * {@link #removeGrandChild} to change them.
+   * 
+   * @return The grand children, read only
+   */
+  public Collection<GrandChild> getGrandChildren() {
+    return Collections.unmodifiableCollection(grandChildren.values());
+  }
+
+  /**
+   * Get a grand child by id.
    * 
-   * @return The grand children.
+   * @param id the grand child id
+   * @return the grand child, null if not a grand child of this child
    */
-  public List<GrandChild> getGrandChildren() {
-    return this.grandChildren;
+  public GrandChild getGrandChild(Long id) {
+    return grandChildren.get(id);
   }
   
   public void addGrandChild(GrandChild gc) {
-    grandChildren.add(gc);
+    grandChildren.put(gc.getId(), gc);
     gc.setChildLocal(this);
     
   }
 
+  /**
+   * Remove a grand child, by id; the grand child is deleted at flush unless added to
+   * another child.
+   * 
+   * @param gc the grand child to remove
+   * @return true if it was a grand child of this child
+   */
+  public boolean removeGrandChild(GrandChild gc) {
+    return grandChildren.remove(gc.getId()) != null;
+  }
+
   
   @Override
   public int hashCode() {
@@ -2,6 +2,7 @@ package com.gpaglia.springlock.entities;
 
 import javax.persistence.Access;
 import javax.persistence.AccessType;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
@@ -10,6 +11,9 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Parent.
  */
@@ -17,6 +21,8 @@ import javax.persistence.Version;
 @Entity
 @Table(name = "GRANDCHILDREN")
 @Access(AccessType.FIELD)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class GrandChild {
   @Id
   private Long id;
@@ -92,7 +98,7 @@ public class GrandChild {
       if (child.equals(c)) {
         return;
       } else {
-        child.getGrandChildren().remove(this);
+        child.removeGrandChild(this);
       }
     }
     
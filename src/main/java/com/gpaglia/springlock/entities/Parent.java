@@ -1,19 +1,28 @@
 package com.gpaglia.springlock.entities;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.persistence.Access;
 import javax.persistence.AccessType;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.MapKey;
 import javax.persistence.OneToMany;
+import javax.persistence.OrderBy;
 import javax.persistence.Table;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Parent.
  */
@@ -21,6 +30,8 @@ import javax.persistence.Version;
 @Entity
 @Table(name = "PARENTS")
 @Access(AccessType.FIELD)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Parent {
   @Id
   private Long id;
@@ -36,7 +47,11 @@ public class Parent {
       mappedBy = "parent", 
       cascade = CascadeType.ALL, 
       orphanRemoval = true)
-  private List<Child> children = new ArrayList<>();
+  @MapKey(name = "id")
+  @OrderBy("id")
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+  @BatchSize(size = 50)
+  private Map<Long, Child> children = new LinkedHashMap<>();
 
   Parent() {}
 
@@ -82,18 +97,39 @@ public class Parent {
   }
 
   /**
-   * Get the children.
+   * Get the children, indexed by id: use {@link #addChild} and {@link #removeChild}
+   * to change them.
+   * 
+   * @return the children, read only
+   */
+  public Collection<Child> getChildren() {
+    return Collections.unmodifiableCollection(children.values());
+  }
+
+  /**
+   * Get a child by id.
    * 
-   * @return the children.
+   * @param id the child id
+   * @return the child, null if not a child of this parent
    */
-  public List<Child> getChildren() {
-    return children;
+  public Child getChild(Long id) {
+    return children.get(id);
   }
   
   public void addChild(Child c) {
-    children.add(c);
+    children.put(c.getId(), c);
     c.setParentLocal(this);
   }
+
+  /**
+   * Remove a child, by id; the child is deleted at flush unless added to another parent.
+   * 
+   * @param c the child to remove
+   * @return true if it was a child of this parent
+   */
+  public boolean removeChild(Child c) {
+    return children.remove(c.getId()) != null;
+  }
   
   @Override
   public int hashCode() {
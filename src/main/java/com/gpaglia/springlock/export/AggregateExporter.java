@@ -0,0 +1,172 @@
+package com.gpaglia.springlock.export;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes all the parent aggregates as NDJSON, one line per parent in id order, with
+ * its children and their grandchildren nested in id order:
+ *
+ * <pre>
+ * {"id":1,"version":0,"name":"P","children":[{"id":10,"version":0,"name":"C","grandChildren":[...]}]}
+ * </pre>
+ *
+ * <p>The parents are read over a cursor, {@link ParentRepository#streamAllOrderById()},
+ * and written in chunks of {@link ExportProperties#getChunkSize()}: the children and
+ * grandchildren of a chunk are loaded by one query each, then the persistence context
+ * is cleared. The memory used is bounded by the size of a chunk, whatever the number
+ * of rows exported.
+ */
+@Component
+public class AggregateExporter {
+  private static final JsonFactory JSON = new JsonFactory()
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+      .setRootValueSeparator(null);
+
+  private final ParentRepository parents;
+  private final TransactionTemplate txTemplate;
+  private final ExportProperties props;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Autowired
+  public AggregateExporter(
+      ParentRepository parents,
+      PlatformTransactionManager txManager,
+      ExportProperties props
+  ) {
+    this.parents = parents;
+    this.txTemplate = new TransactionTemplate(txManager);
+    this.txTemplate.setReadOnly(true);
+    this.props = props;
+  }
+
+  /**
+   * Export all the parent aggregates in a read only transaction of its own.
+   *
+   * @param out the stream to write to, flushed after each chunk and left open
+   * @return the number of parents written
+   * @throws IOException if writing fails
+   * @throws IllegalStateException if called within an active transaction, whose
+   *     persistence context would be cleared under its feet
+   */
+  public long exportNdjson(OutputStream out) throws IOException {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException(
+          "AggregateExporter must be called outside of a transaction");
+    }
+
+    try {
+      return txTemplate.execute(status -> {
+        try (JsonGenerator gen = JSON.createGenerator(out, JsonEncoding.UTF8);
+            Stream<Parent> stream = parents.streamAllOrderById()) {
+          return export(gen, stream.iterator());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private long export(JsonGenerator gen, Iterator<Parent> it) throws IOException {
+    final int chunkSize = Math.max(1, props.getChunkSize());
+    final List<Parent> chunk = new ArrayList<>(chunkSize);
+    long count = 0;
+
+    while (it.hasNext()) {
+      chunk.add(it.next());
+      if (chunk.size() == chunkSize || !it.hasNext()) {
+        writeChunk(gen, chunk);
+        gen.flush();
+        count += chunk.size();
+        chunk.clear();
+        em.clear();
+      }
+    }
+    return count;
+  }
+
+  private void writeChunk(JsonGenerator gen, List<Parent> chunk) throws IOException {
+    final List<Long> ids = chunk.stream().map(Parent::getId).collect(Collectors.toList());
+    final Map<Long, List<Child>> children = byOwner(em
+        .createQuery(
+            "select c.parent.id, c from Child c where c.parent.id in :ids order by c.id",
+            Object[].class)
+        .setParameter("ids", ids));
+    final Map<Long, List<GrandChild>> grandChildren = byOwner(em
+        .createQuery(
+            "select g.child.id, g from GrandChild g where g.child.parent.id in :ids order by g.id",
+            Object[].class)
+        .setParameter("ids", ids));
+
+    for (Parent p : chunk) {
+      gen.writeStartObject();
+      gen.writeNumberField("id", p.getId());
+      gen.writeNumberField("version", p.getVersion());
+      gen.writeStringField("name", p.getName());
+      gen.writeArrayFieldStart("children");
+      for (Child c : children.getOrDefault(p.getId(), Collections.emptyList())) {
+        gen.writeStartObject();
+        gen.writeNumberField("id", c.getId());
+        gen.writeNumberField("version", c.getVersion());
+        gen.writeStringField("name", c.getName());
+        gen.writeArrayFieldStart("grandChildren");
+        for (GrandChild gc : grandChildren.getOrDefault(c.getId(), Collections.emptyList())) {
+          gen.writeStartObject();
+          gen.writeNumberField("id", gc.getId());
+          gen.writeNumberField("version", gc.getVersion());
+          gen.writeStringField("name", gc.getName());
+          gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+      }
+      gen.writeEndArray();
+      gen.writeEndObject();
+      gen.writeRaw('\n');
+    }
+  }
+
+  /**
+   * Group the rows of an (owner id, entity) query by owner, keeping their order.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> Map<Long, List<T>> byOwner(TypedQuery<Object[]> q) {
+    final Map<Long, List<T>> byOwner = new HashMap<>();
+    q.setHint("org.hibernate.readOnly", true)
+        .setHint("org.hibernate.cacheMode", "IGNORE")
+        .getResultList()
+        .forEach(r -> byOwner.computeIfAbsent((Long) r[0], k -> new ArrayList<>()).add((T) r[1]));
+    return byOwner;
+  }
+}
@@ -0,0 +1,33 @@
+package com.gpaglia.springlock.export;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link AggregateExporter}, bound to {@code springlock.export.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.export")
+public class ExportProperties {
+
+  /** Parents written between two clears of the persistence context. */
+  private int chunkSize = 500;
+
+  /**
+   * Get the chunk size.
+   *
+   * @return the chunk size
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Set the chunk size.
+   *
+   * @param chunkSize the chunk size to set
+   */
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+}
@@ -0,0 +1,50 @@
+package com.gpaglia.springlock.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+
+/**
+ * The {@code hibernate.integrator_provider}, which several features append their
+ * integrators to: hibernate takes a single provider.
+ */
+public final class AppendingIntegratorProvider implements IntegratorProvider {
+
+  /** The hibernate property of the integrator provider. */
+  public static final String INTEGRATOR_PROVIDER = "hibernate.integrator_provider";
+
+  private final List<Integrator> integrators = new ArrayList<>();
+
+  private AppendingIntegratorProvider() {
+  }
+
+  /**
+   * Append an integrator to the provider of the hibernate properties, keeping the
+   * integrators of any provider set before.
+   *
+   * @param props the hibernate properties
+   * @param integrator the integrator
+   */
+  public static void append(Map<String, Object> props, Integrator integrator) {
+    final Object current = props.get(INTEGRATOR_PROVIDER);
+    final AppendingIntegratorProvider provider;
+    if (current instanceof AppendingIntegratorProvider) {
+      provider = (AppendingIntegratorProvider) current;
+    } else {
+      provider = new AppendingIntegratorProvider();
+      if (current instanceof IntegratorProvider) {
+        provider.integrators.addAll(((IntegratorProvider) current).getIntegrators());
+      }
+      props.put(INTEGRATOR_PROVIDER, provider);
+    }
+    provider.integrators.add(integrator);
+  }
+
+  @Override
+  public List<Integrator> getIntegrators() {
+    return integrators;
+  }
+}
@@ -0,0 +1,27 @@
+package com.gpaglia.springlock.hibernate;
+
+import org.hibernate.LockMode;
+
+/**
+ * The lock modes of the persistence context entries, as seen by the listeners.
+ */
+public final class LockModes {
+
+  private LockModes() {
+  }
+
+  /**
+   * Whether an entry is force locked, i.e. its version incremented by a dedicated
+   * update: {@code OPTIMISTIC_FORCE_INCREMENT} until the transaction completes,
+   * {@code PESSIMISTIC_FORCE_INCREMENT}, or the deprecated {@code FORCE} hibernate sets
+   * once the version is incremented. The latter two are the only modes above
+   * {@code PESSIMISTIC_WRITE}, which spares naming {@code FORCE}.
+   *
+   * @param mode the lock mode of the entry
+   * @return true if the version is, or is to be, force incremented
+   */
+  public static boolean isForceIncrement(LockMode mode) {
+    return mode == LockMode.OPTIMISTIC_FORCE_INCREMENT
+        || mode.greaterThan(LockMode.PESSIMISTIC_WRITE);
+  }
+}
@@ -0,0 +1,51 @@
+package com.gpaglia.springlock.hibernate;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.EventSource;
+
+/**
+ * The state a listener keeps for the transaction of each session, created on first use
+ * and dropped once the transaction completes.
+ *
+ * <p>The listeners are shared by all the sessions of a factory, so the states are kept
+ * by session, weakly, for the sessions closed without completing their transaction.
+ *
+ * @param <T> the type of the state
+ */
+public final class SessionState<T> {
+
+  private final Map<SessionImplementor, T> states =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  private final Function<EventSource, T> factory;
+
+  /**
+   * Create the states.
+   *
+   * @param factory creates the state of a session, and registers with its action queue
+   *     the processes it needs; those run before the state is dropped
+   */
+  public SessionState(Function<EventSource, T> factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * Get the state of the current transaction of a session, creating it if needed.
+   *
+   * @param session the session
+   * @return the state
+   */
+  public T of(EventSource session) {
+    return states.computeIfAbsent(session, s -> {
+      final T state = factory.apply(session);
+      session.getActionQueue().registerProcess(
+          (AfterTransactionCompletionProcess) (success, ss) -> states.remove(session));
+      return state;
+    });
+  }
+}
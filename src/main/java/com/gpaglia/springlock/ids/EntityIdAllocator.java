@@ -0,0 +1,110 @@
+package com.gpaglia.springlock.ids;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Table;
+import javax.sql.DataSource;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Hands out the ids of the entities, e.g. {@code new Parent(ids.nextId(Parent.class), name)},
+ * from one {@link PooledIdAllocator} per entity.
+ *
+ * <p>Each entity has its own sequence, named after its table with a {@code _SEQ} suffix
+ * and incremented by {@code springlock.ids.block-size}, so that a node takes a round
+ * trip per block rather than per entity. The blocks are fetched by a dedicated thread,
+ * outside of the transactions of the callers.
+ */
+@Component
+public class EntityIdAllocator {
+
+  private final JdbcTemplate jdbc;
+  private final Dialect dialect;
+  private final EntityManagerFactory emf;
+  private final IdAllocatorProperties props;
+  private final ExecutorService executor;
+  private final Map<Class<?>, PooledIdAllocator> allocators = new ConcurrentHashMap<>();
+
+  @Autowired
+  public EntityIdAllocator(
+      DataSource dataSource,
+      EntityManagerFactory emf,
+      IdAllocatorProperties props
+  ) {
+    this.jdbc = new JdbcTemplate(dataSource);
+    this.dialect = emf.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    this.emf = emf;
+    this.props = props;
+    this.executor = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "springlock-ids");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Get the next id of an entity.
+   *
+   * @param entityClass the entity class
+   * @return the id
+   * @throws IllegalArgumentException if not an entity
+   */
+  public long nextId(Class<?> entityClass) {
+    return allocatorFor(entityClass).nextId();
+  }
+
+  /**
+   * Get the allocator of an entity.
+   *
+   * @param entityClass the entity class
+   * @return the allocator
+   * @throws IllegalArgumentException if not an entity
+   */
+  public PooledIdAllocator allocatorFor(Class<?> entityClass) {
+    return allocators.computeIfAbsent(entityClass, this::newAllocator);
+  }
+
+  private PooledIdAllocator newAllocator(Class<?> entityClass) {
+    // throws IllegalArgumentException if not an entity
+    emf.getMetamodel().entity(entityClass);
+
+    return new PooledIdAllocator(
+        new SequenceIdBlockSource(
+            jdbc, dialect, sequenceName(entityClass), props.getInitialValue(), props.getBlockSize()),
+        executor,
+        props.getBlockSize(),
+        props.getPrefetchThreshold());
+  }
+
+  /**
+   * The sequence of an entity: its table name, or else its class name, with a
+   * {@code _SEQ} suffix.
+   *
+   * @param entityClass the entity class
+   * @return the sequence name
+   */
+  static String sequenceName(Class<?> entityClass) {
+    Table table = AnnotationUtils.findAnnotation(entityClass, Table.class);
+    String base = table != null && StringUtils.hasText(table.name())
+        ? table.name()
+        : entityClass.getSimpleName().toUpperCase();
+    return base + "_SEQ";
+  }
+
+  @PreDestroy
+  public void close() {
+    executor.shutdownNow();
+  }
+}
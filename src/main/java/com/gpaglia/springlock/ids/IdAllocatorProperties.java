@@ -0,0 +1,75 @@
+package com.gpaglia.springlock.ids;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link EntityIdAllocator}, bound to {@code springlock.ids.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.ids")
+public class IdAllocatorProperties {
+
+  /** Ids per block, also the increment of the sequences. */
+  private int blockSize = 100;
+
+  /** First value of the sequences created by the allocator. */
+  private long initialValue = 1;
+
+  /** Fraction of the current block left when the next one is fetched. */
+  private double prefetchThreshold = 0.5;
+
+  /**
+   * Get the block size.
+   *
+   * @return the block size
+   */
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Set the block size.
+   *
+   * @param blockSize the block size to set
+   */
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Get the initial value.
+   *
+   * @return the initial value
+   */
+  public long getInitialValue() {
+    return initialValue;
+  }
+
+  /**
+   * Set the initial value.
+   *
+   * @param initialValue the initial value to set
+   */
+  public void setInitialValue(long initialValue) {
+    this.initialValue = initialValue;
+  }
+
+  /**
+   * Get the prefetch threshold.
+   *
+   * @return the prefetch threshold
+   */
+  public double getPrefetchThreshold() {
+    return prefetchThreshold;
+  }
+
+  /**
+   * Set the prefetch threshold.
+   *
+   * @param prefetchThreshold the prefetch threshold to set
+   */
+  public void setPrefetchThreshold(double prefetchThreshold) {
+    this.prefetchThreshold = prefetchThreshold;
+  }
+}
@@ -0,0 +1,16 @@
+package com.gpaglia.springlock.ids;
+
+/**
+ * Source of the id blocks of a {@link PooledIdAllocator}.
+ */
+@FunctionalInterface
+public interface IdBlockSource {
+
+  /**
+   * Reserve the next block of ids, which no other caller, in this or any other JVM,
+   * will get.
+   *
+   * @return the lowest id of the block, the block spanning the block size from it
+   */
+  long nextBlock();
+}
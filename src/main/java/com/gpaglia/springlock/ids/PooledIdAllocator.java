@@ -0,0 +1,127 @@
+package com.gpaglia.springlock.ids;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pooled-lo id allocator: each value of the source is the lowest id of a block of
+ * {@code blockSize} ids, handed out without locking.
+ *
+ * <p>Within a block, ids are taken by incrementing an {@link AtomicLong}. The caller
+ * taking the id at the prefetch threshold asks the executor for the next block, so
+ * that it is usually available before the current one runs out; the callers finding
+ * the current block exhausted wait on that fetch, and the first of them installs the
+ * new block. Blocks are never shared between allocators over the same source, and the
+ * ids of the block in use are lost when the allocator is dropped.
+ */
+public class PooledIdAllocator {
+
+  private final IdBlockSource source;
+  private final Executor executor;
+  private final int blockSize;
+  private final int prefetchAt;
+
+  private final AtomicReference<Block> current = new AtomicReference<>(new Block(0, 0, 0));
+  private final AtomicReference<CompletableFuture<Block>> next = new AtomicReference<>();
+
+  /**
+   * Ids of a block, from {@code next} up to {@code hi} excluded.
+   */
+  private static final class Block {
+    final AtomicLong next;
+    final long hi;
+    final long prefetchId;
+
+    Block(long lo, long hi, long prefetchId) {
+      this.next = new AtomicLong(lo);
+      this.hi = hi;
+      this.prefetchId = prefetchId;
+    }
+  }
+
+  /**
+   * Create the allocator.
+   *
+   * @param source the block source
+   * @param executor the executor of the block fetches
+   * @param blockSize the ids per block
+   * @param prefetchThreshold the fraction of the block left when the next one is fetched
+   */
+  public PooledIdAllocator(
+      IdBlockSource source,
+      Executor executor,
+      int blockSize,
+      double prefetchThreshold
+  ) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+    }
+    this.source = source;
+    this.executor = executor;
+    this.blockSize = blockSize;
+    this.prefetchAt = (int) Math.min(blockSize - 1,
+        Math.max(0, Math.round(blockSize * (1 - prefetchThreshold))));
+  }
+
+  /**
+   * Get the next id.
+   *
+   * @return the id
+   */
+  public long nextId() {
+    for (;;) {
+      final Block block = current.get();
+      final long id = block.next.getAndIncrement();
+      if (id < block.hi) {
+        if (id == block.prefetchId) {
+          prefetch();
+        }
+        return id;
+      }
+
+      // exhausted: wait for the next block, the first one here installs it
+      final CompletableFuture<Block> f = prefetch();
+      final Block fetched;
+      try {
+        fetched = f.join();
+      } catch (CompletionException e) {
+        next.compareAndSet(f, null);
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+      if (current.compareAndSet(block, fetched)) {
+        next.compareAndSet(f, null);
+      }
+    }
+  }
+
+  /**
+   * Get the fetch of the next block, starting it unless already in progress.
+   */
+  private CompletableFuture<Block> prefetch() {
+    for (;;) {
+      CompletableFuture<Block> f = next.get();
+      if (f != null) {
+        return f;
+      }
+      CompletableFuture<Block> started = new CompletableFuture<>();
+      if (next.compareAndSet(null, started)) {
+        try {
+          executor.execute(() -> {
+            try {
+              long lo = source.nextBlock();
+              started.complete(new Block(lo, lo + blockSize, lo + prefetchAt));
+            } catch (Throwable t) {
+              started.completeExceptionally(t);
+            }
+          });
+        } catch (RuntimeException e) {
+          started.completeExceptionally(e);
+        }
+        return started;
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.gpaglia.springlock.ids;
+
+import org.hibernate.dialect.Dialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Blocks from a database sequence incremented by the block size, one round trip per block.
+ *
+ * <p>The sequence is created on first use when missing; the statements come from the
+ * hibernate dialect.
+ */
+public class SequenceIdBlockSource implements IdBlockSource {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SequenceIdBlockSource.class);
+
+  private final JdbcTemplate jdbc;
+  private final Dialect dialect;
+  private final String sequenceName;
+  private final long initialValue;
+  private final int blockSize;
+
+  private volatile boolean created;
+
+  /**
+   * Create the block source.
+   *
+   * @param jdbc the jdbc template
+   * @param dialect the hibernate dialect
+   * @param sequenceName the sequence name
+   * @param initialValue the first value of the sequence, if created
+   * @param blockSize the block size, the increment of the sequence
+   */
+  public SequenceIdBlockSource(
+      JdbcTemplate jdbc,
+      Dialect dialect,
+      String sequenceName,
+      long initialValue,
+      int blockSize
+  ) {
+    this.jdbc = jdbc;
+    this.dialect = dialect;
+    this.sequenceName = sequenceName;
+    this.initialValue = initialValue;
+    this.blockSize = blockSize;
+  }
+
+  @Override
+  public long nextBlock() {
+    if (!created) {
+      createIfMissing();
+    }
+    Long lo = jdbc.queryForObject(dialect.getSequenceNextValString(sequenceName), Long.class);
+    if (lo == null) {
+      throw new IllegalStateException("No value from sequence " + sequenceName);
+    }
+    return lo;
+  }
+
+  private synchronized void createIfMissing() {
+    if (created) {
+      return;
+    }
+    try {
+      jdbc.batchUpdate(dialect.getCreateSequenceStrings(
+          sequenceName, Math.toIntExact(initialValue), blockSize));
+      LOGGER.info("Created sequence {}, starting at {} by {}",
+          sequenceName, initialValue, blockSize);
+    } catch (DataAccessException e) {
+      // already there, created by a previous run or by another node
+      LOGGER.debug("Sequence {} not created: {}", sequenceName, e.getMessage());
+    }
+    created = true;
+  }
+}
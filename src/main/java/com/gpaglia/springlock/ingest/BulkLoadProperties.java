@@ -0,0 +1,33 @@
+package com.gpaglia.springlock.ingest;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link CsvBulkLoader}, bound to {@code springlock.ingest.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.ingest")
+public class BulkLoadProperties {
+
+  /** Rows per multi-row insert, each of them committed in its own transaction. */
+  private int chunkSize = 1000;
+
+  /**
+   * Get the chunk size.
+   *
+   * @return the chunk size
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Set the chunk size.
+   *
+   * @param chunkSize the chunk size to set
+   */
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+}
@@ -0,0 +1,209 @@
+package com.gpaglia.springlock.ingest;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.Parent;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.h2.tools.Csv;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Loads parents, children and grandchildren from CSV files, bypassing the entity
+ * manager: the rows are read as a stream and inserted by multi-row {@code insert}
+ * statements of {@link BulkLoadProperties#getChunkSize()} rows, each one committed
+ * in its own transaction. The versions are initialized to 0, as for a persisted entity.
+ *
+ * <p>The files have a header line and the columns {@code ID,NAME} for the parents,
+ * {@code ID,NAME,PARENT_ID} for the children and {@code ID,NAME,CHILD_ID} for the
+ * grandchildren, in any order; the owners must be loaded first. An id which is not a
+ * number fails the load with its line. On failure the chunks already committed stay
+ * loaded, e.g. to resume after the last id loaded.
+ *
+ * <p>The second level cache is not aware of the inserted rows: the cached
+ * collections of the owners are evicted once the load is over.
+ */
+@Component
+public class CsvBulkLoader {
+
+  /**
+   * The target tables, with the column of their owner id, if any.
+   */
+  enum Target {
+    PARENTS(null, null),
+    CHILDREN("PARENT_ID", Parent.class.getName() + ".children"),
+    GRANDCHILDREN("CHILD_ID", Child.class.getName() + ".grandChildren");
+
+    final String ownerColumn;
+    final String ownerRole;
+
+    Target(String ownerColumn, String ownerRole) {
+      this.ownerColumn = ownerColumn;
+      this.ownerRole = ownerRole;
+    }
+
+    int columns() {
+      return ownerColumn == null ? 2 : 3;
+    }
+
+    String insert(int rows) {
+      final String columns = ownerColumn == null
+          ? "ID, VERSION, NAME"
+          : "ID, VERSION, NAME, " + ownerColumn;
+      final String values = ownerColumn == null ? "(?, 0, ?)" : "(?, 0, ?, ?)";
+      final StringBuilder sb = new StringBuilder("insert into ")
+          .append(name()).append(" (").append(columns).append(") values ").append(values);
+      for (int i = 1; i < rows; i++) {
+        sb.append(", ").append(values);
+      }
+      return sb.toString();
+    }
+  }
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate txTemplate;
+  private final SessionFactory sessionFactory;
+  private final SQLExceptionTranslator translator;
+  private final BulkLoadProperties props;
+
+  @Autowired
+  public CsvBulkLoader(
+      DataSource dataSource,
+      PlatformTransactionManager txManager,
+      EntityManagerFactory emf,
+      BulkLoadProperties props
+  ) {
+    this.jdbc = new JdbcTemplate(dataSource);
+    this.txTemplate = new TransactionTemplate(txManager);
+    this.sessionFactory = emf.unwrap(SessionFactory.class);
+    this.translator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+    this.props = props;
+  }
+
+  /**
+   * Load parents from a CSV with the {@code ID,NAME} columns.
+   *
+   * @param csv the csv, closed at the end
+   * @return the number of rows loaded
+   * @throws org.springframework.dao.DataAccessException if reading or inserting fails
+   * @throws UncheckedIOException if the csv cannot be opened
+   * @throws IllegalStateException if called within an active transaction
+   */
+  public long loadParents(Reader csv) {
+    return load(Target.PARENTS, csv);
+  }
+
+  /**
+   * Load children from a CSV with the {@code ID,NAME,PARENT_ID} columns.
+   *
+   * @param csv the csv, closed at the end
+   * @return the number of rows loaded
+   * @throws org.springframework.dao.DataAccessException if reading or inserting fails,
+   *     e.g. on a missing parent
+   * @throws UncheckedIOException if the csv cannot be opened
+   * @throws IllegalStateException if called within an active transaction
+   */
+  public long loadChildren(Reader csv) {
+    return load(Target.CHILDREN, csv);
+  }
+
+  /**
+   * Load grandchildren from a CSV with the {@code ID,NAME,CHILD_ID} columns.
+   *
+   * @param csv the csv, closed at the end
+   * @return the number of rows loaded
+   * @throws org.springframework.dao.DataAccessException if reading or inserting fails,
+   *     e.g. on a missing child
+   * @throws UncheckedIOException if the csv cannot be opened
+   * @throws IllegalStateException if called within an active transaction
+   */
+  public long loadGrandChildren(Reader csv) {
+    return load(Target.GRANDCHILDREN, csv);
+  }
+
+  private long load(Target target, Reader csv) {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("CsvBulkLoader must be called outside of a transaction");
+    }
+
+    final int chunkSize = Math.max(1, props.getChunkSize());
+    final String fullInsert = target.insert(chunkSize);
+    final List<Object> args = new ArrayList<>(chunkSize * target.columns());
+    long count = 0;
+    long line = 1;
+
+    try (ResultSet rs = new Csv().read(csv, null)) {
+      final int id = rs.findColumn("ID");
+      final int name = rs.findColumn("NAME");
+      final int owner = target.ownerColumn == null ? 0 : rs.findColumn(target.ownerColumn);
+
+      while (rs.next()) {
+        line++;
+        args.add(idOf(rs, id, line));
+        args.add(rs.getString(name));
+        if (owner > 0) {
+          args.add(idOf(rs, owner, line));
+        }
+        if (args.size() == chunkSize * target.columns()) {
+          count += insert(fullInsert, args);
+        }
+      }
+      if (!args.isEmpty()) {
+        count += insert(target.insert(args.size() / target.columns()), args);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (SQLException e) {
+      throw translator.translate("CSV load of " + target, null, e);
+    } finally {
+      evictOwners(target);
+    }
+    return count;
+  }
+
+  /**
+   * Parse an id column of the current row.
+   *
+   * @throws DataIntegrityViolationException if it is not a number, with its line
+   */
+  private static Long idOf(ResultSet rs, int column, long line) throws SQLException {
+    final String value = rs.getString(column);
+    try {
+      return Long.valueOf(value);
+    } catch (NumberFormatException e) {
+      throw new DataIntegrityViolationException("Invalid "
+          + rs.getMetaData().getColumnName(column) + " '" + value + "' at line " + line
+          + " of the CSV", e);
+    }
+  }
+
+  private int insert(String sql, List<Object> args) {
+    final Object[] values = args.toArray();
+    args.clear();
+    return txTemplate.execute(status -> jdbc.update(sql, values));
+  }
+
+  private void evictOwners(Target target) {
+    if (target.ownerRole != null) {
+      sessionFactory.getCache().evictCollectionData(target.ownerRole);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.gpaglia.springlock.locking;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link AdaptiveParentLocker}, bound to {@code springlock.adaptive.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.adaptive")
+public class AdaptiveLockProperties {
+
+  /** Length of the sliding window the conflict rate is computed on. */
+  private Duration window = Duration.ofSeconds(10);
+
+  /** Number of buckets the window is split in. */
+  private int buckets = 10;
+
+  /** Minimum attempts in the window before a parent is switched to pessimistic. */
+  private int minSamples = 20;
+
+  /** Conflict rate at or above which a parent is switched to pessimistic. */
+  private double enterRate = 0.2;
+
+  /** Conflict rate at or below which a parent is switched back to optimistic. */
+  private double exitRate = 0.05;
+
+  /** Number of tracked parents above which idle ones are dropped. */
+  private int maxTrackedIds = 10_000;
+
+  /**
+   * Get the window.
+   * 
+   * @return the window
+   */
+  public Duration getWindow() {
+    return window;
+  }
+
+  /**
+   * Set the window.
+   * 
+   * @param window the window to set
+   */
+  public void setWindow(Duration window) {
+    this.window = window;
+  }
+
+  /**
+   * Get the buckets.
+   * 
+   * @return the buckets
+   */
+  public int getBuckets() {
+    return buckets;
+  }
+
+  /**
+   * Set the buckets.
+   * 
+   * @param buckets the buckets to set
+   */
+  public void setBuckets(int buckets) {
+    this.buckets = buckets;
+  }
+
+  /**
+   * Get the min samples.
+   * 
+   * @return the min samples
+   */
+  public int getMinSamples() {
+    return minSamples;
+  }
+
+  /**
+   * Set the min samples.
+   * 
+   * @param minSamples the min samples to set
+   */
+  public void setMinSamples(int minSamples) {
+    this.minSamples = minSamples;
+  }
+
+  /**
+   * Get the enter rate.
+   * 
+   * @return the enter rate
+   */
+  public double getEnterRate() {
+    return enterRate;
+  }
+
+  /**
+   * Set the enter rate.
+   * 
+   * @param enterRate the enter rate to set
+   */
+  public void setEnterRate(double enterRate) {
+    this.enterRate = enterRate;
+  }
+
+  /**
+   * Get the exit rate.
+   * 
+   * @return the exit rate
+   */
+  public double getExitRate() {
+    return exitRate;
+  }
+
+  /**
+   * Set the exit rate.
+   * 
+   * @param exitRate the exit rate to set
+   */
+  public void setExitRate(double exitRate) {
+    this.exitRate = exitRate;
+  }
+
+  /**
+   * Get the max tracked ids.
+   * 
+   * @return the max tracked ids
+   */
+  public int getMaxTrackedIds() {
+    return maxTrackedIds;
+  }
+
+  /**
+   * Set the max tracked ids.
+   * 
+   * @param maxTrackedIds the max tracked ids to set
+   */
+  public void setMaxTrackedIds(int maxTrackedIds) {
+    this.maxTrackedIds = maxTrackedIds;
+  }
+}
@@ -0,0 +1,195 @@
+package com.gpaglia.springlock.locking;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.LockModeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the lock mode of each {@link Parent} write from the contention observed on it.
+ *
+ * <p>Parents start on {@link ParentRepository#optimisticFindById}, which takes no row lock.
+ * When the optimistic failure rate of a parent over the sliding window reaches
+ * {@link AdaptiveLockProperties#getEnterRate()}, it is switched to
+ * {@link ParentRepository#pessimisticFindById}, so that concurrent writers queue on the
+ * row lock instead of failing at commit. While pessimistic, an attempt counts as
+ * contended when another writer is in flight on the same parent in this JVM; once the
+ * contended rate drops to {@link AdaptiveLockProperties#getExitRate()}, or the traffic
+ * on the parent falls below the minimum samples, it is switched back to optimistic.
+ *
+ * <p>Switches are logged with the parent id and counted in the
+ * {@code springlock.adaptive.switches} counter, tagged with the new mode; the
+ * {@code springlock.adaptive.pessimistic.ids} gauge tracks how many parents are
+ * currently pessimistic.
+ */
+@Component
+public class AdaptiveParentLocker {
+  private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveParentLocker.class);
+
+  private final ParentRepository parentRepo;
+  private final OptimisticRetryTemplate retry;
+  private final AdaptiveLockProperties props;
+  private final Map<Long, IdStats> stats = new ConcurrentHashMap<>();
+
+  private final Counter toPessimistic;
+  private final Counter toOptimistic;
+
+  /**
+   * Per parent contention state.
+   */
+  private static final class IdStats {
+    final ConflictWindow window;
+    final AtomicInteger inFlight = new AtomicInteger();
+    volatile boolean pessimistic;
+
+    IdStats(ConflictWindow window) {
+      this.window = window;
+    }
+  }
+
+  @Autowired
+  public AdaptiveParentLocker(
+      ParentRepository parentRepo,
+      OptimisticRetryTemplate retry,
+      AdaptiveLockProperties props,
+      ObjectProvider<MeterRegistry> registry
+  ) {
+    this.parentRepo = parentRepo;
+    this.retry = retry;
+    this.props = props;
+
+    MeterRegistry reg = registry.getIfAvailable(() -> Metrics.globalRegistry);
+    this.toPessimistic = Counter.builder("springlock.adaptive.switches")
+        .description("Parents switched to a different lock mode")
+        .tag("mode", "pessimistic")
+        .register(reg);
+    this.toOptimistic = Counter.builder("springlock.adaptive.switches")
+        .description("Parents switched to a different lock mode")
+        .tag("mode", "optimistic")
+        .register(reg);
+    reg.gauge("springlock.adaptive.pessimistic.ids", stats,
+        m -> m.values().stream().filter(s -> s.pessimistic).count());
+  }
+
+  /**
+   * Load the parent with the lock mode currently selected for it and apply the work,
+   * in a transaction retried on optimistic failures.
+   *
+   * @param <T> the result type
+   * @param id the parent id
+   * @param work the work on the locked parent
+   * @return the result of the work
+   * @throws ObjectRetrievalFailureException if the parent does not exist
+   */
+  public <T> T execute(Long id, Function<Parent, T> work) {
+    final IdStats s = stats.computeIfAbsent(id, k -> newStats());
+    final boolean[] lastPessimistic = new boolean[1];
+
+    T result = retry.execute(status -> {
+      final boolean pessimistic = s.pessimistic;
+      final boolean overlapping = s.inFlight.getAndIncrement() > 0;
+      lastPessimistic[0] = pessimistic;
+      try {
+        Parent p = (pessimistic
+            ? parentRepo.pessimisticFindById(id)
+            : parentRepo.optimisticFindById(id))
+            .orElseThrow(() -> new ObjectRetrievalFailureException(Parent.class, id));
+
+        if (pessimistic) {
+          record(id, s, overlapping);
+        }
+        return work.apply(p);
+      } finally {
+        s.inFlight.decrementAndGet();
+      }
+    }, e -> record(id, s, true));
+
+    // optimistic outcomes are only known once committed
+    if (!lastPessimistic[0]) {
+      record(id, s, false);
+    }
+    return result;
+  }
+
+  /**
+   * Get the lock mode currently selected for a parent.
+   *
+   * @param id the parent id
+   * @return the lock mode
+   */
+  public LockModeType currentMode(Long id) {
+    IdStats s = stats.get(id);
+    return s != null && s.pessimistic
+        ? LockModeType.PESSIMISTIC_FORCE_INCREMENT
+        : LockModeType.OPTIMISTIC_FORCE_INCREMENT;
+  }
+
+  /**
+   * Get the ids of the parents currently locked pessimistically.
+   *
+   * @return the ids
+   */
+  public Set<Long> pessimisticIds() {
+    return stats.entrySet().stream()
+        .filter(e -> e.getValue().pessimistic)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+  }
+
+  private IdStats newStats() {
+    if (stats.size() >= props.getMaxTrackedIds()) {
+      evictIdle();
+    }
+    return new IdStats(new ConflictWindow(
+        props.getWindow().toNanos(), props.getBuckets(), System.nanoTime()));
+  }
+
+  private void record(Long id, IdStats s, boolean conflict) {
+    final long now = System.nanoTime();
+    s.window.record(now, conflict);
+
+    final long attempts = s.window.attempts(now);
+    final double rate = s.window.conflictRate(now);
+
+    synchronized (s) {
+      if (!s.pessimistic) {
+        if (attempts >= props.getMinSamples() && rate >= props.getEnterRate()) {
+          s.pessimistic = true;
+          toPessimistic.increment();
+          LOGGER.info("Parent {} switched to pessimistic locking, "
+              + "conflict rate {} over {} attempts", id, rate, attempts);
+        }
+      } else if (attempts < props.getMinSamples() || rate <= props.getExitRate()) {
+        s.pessimistic = false;
+        toOptimistic.increment();
+        LOGGER.info("Parent {} switched back to optimistic locking, "
+            + "contention rate {} over {} attempts", id, rate, attempts);
+      }
+    }
+  }
+
+  private void evictIdle() {
+    final long now = System.nanoTime();
+    stats.entrySet().removeIf(e -> !e.getValue().pessimistic
+        && e.getValue().inFlight.get() == 0
+        && e.getValue().window.attempts(now) == 0);
+  }
+}
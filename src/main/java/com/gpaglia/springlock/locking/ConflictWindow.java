@@ -0,0 +1,77 @@
+package com.gpaglia.springlock.locking;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of attempts and conflicts, split in fixed time buckets
+ * which are recycled as time goes by.
+ */
+class ConflictWindow {
+  private final long bucketNanos;
+  private final long[] attempts;
+  private final long[] conflicts;
+  private long currentSlot;
+
+  ConflictWindow(long windowNanos, int buckets, long now) {
+    this.bucketNanos = Math.max(1L, windowNanos / buckets);
+    this.attempts = new long[buckets];
+    this.conflicts = new long[buckets];
+    this.currentSlot = now / bucketNanos;
+  }
+
+  /**
+   * Record an attempt.
+   * 
+   * @param now the current time in nanos
+   * @param conflict true if the attempt conflicted
+   */
+  synchronized void record(long now, boolean conflict) {
+    advance(now);
+    int idx = (int) (currentSlot % attempts.length);
+    attempts[idx]++;
+    if (conflict) {
+      conflicts[idx]++;
+    }
+  }
+
+  /**
+   * Get the attempts in the window.
+   * 
+   * @param now the current time in nanos
+   * @return the attempts
+   */
+  synchronized long attempts(long now) {
+    advance(now);
+    return Arrays.stream(attempts).sum();
+  }
+
+  /**
+   * Get the conflict rate in the window.
+   * 
+   * @param now the current time in nanos
+   * @return the conflicts over the attempts, 0 if there are no attempts
+   */
+  synchronized double conflictRate(long now) {
+    advance(now);
+    long a = Arrays.stream(attempts).sum();
+    return a == 0 ? 0.0 : (double) Arrays.stream(conflicts).sum() / a;
+  }
+
+  private void advance(long now) {
+    long slot = now / bucketNanos;
+    if (slot <= currentSlot) {
+      return;
+    }
+    if (slot - currentSlot >= attempts.length) {
+      Arrays.fill(attempts, 0L);
+      Arrays.fill(conflicts, 0L);
+    } else {
+      for (long s = currentSlot + 1; s <= slot; s++) {
+        int idx = (int) (s % attempts.length);
+        attempts[idx] = 0L;
+        conflicts[idx] = 0L;
+      }
+    }
+    currentSlot = slot;
+  }
+}
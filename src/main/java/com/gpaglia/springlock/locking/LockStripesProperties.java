@@ -0,0 +1,56 @@
+package com.gpaglia.springlock.locking;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link ParentLockStripes}, bound to {@code springlock.stripes.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.stripes")
+public class LockStripesProperties {
+
+  /** Number of stripes, rounded up to a power of two. */
+  private int count = 256;
+
+  /** Max time to wait for a stripe. */
+  private Duration timeout = Duration.ofSeconds(5);
+
+  /**
+   * Get the count.
+   * 
+   * @return the count
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Set the count.
+   * 
+   * @param count the count to set
+   */
+  public void setCount(int count) {
+    this.count = count;
+  }
+
+  /**
+   * Get the timeout.
+   * 
+   * @return the timeout
+   */
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Set the timeout.
+   * 
+   * @param timeout the timeout to set
+   */
+  public void setTimeout(Duration timeout) {
+    this.timeout = timeout;
+  }
+}
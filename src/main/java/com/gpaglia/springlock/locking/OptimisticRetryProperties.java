@@ -0,0 +1,98 @@
+package com.gpaglia.springlock.locking;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link OptimisticRetryTemplate}, bound to {@code springlock.retry.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.retry")
+public class OptimisticRetryProperties {
+
+  /** Total number of attempts, including the first one. */
+  private int maxAttempts = 5;
+
+  /** Backoff before the first retry. */
+  private Duration initialBackoff = Duration.ofMillis(10);
+
+  /** Upper bound of the backoff. */
+  private Duration maxBackoff = Duration.ofSeconds(1);
+
+  /** Growth factor of the backoff between attempts. */
+  private double multiplier = 2.0;
+
+  /**
+   * Get the max attempts.
+   * 
+   * @return the max attempts
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Set the max attempts.
+   * 
+   * @param maxAttempts the max attempts to set
+   */
+  public void setMaxAttempts(int maxAttempts) {
+    this.maxAttempts = maxAttempts;
+  }
+
+  /**
+   * Get the initial backoff.
+   * 
+   * @return the initial backoff
+   */
+  public Duration getInitialBackoff() {
+    return initialBackoff;
+  }
+
+  /**
+   * Set the initial backoff.
+   * 
+   * @param initialBackoff the initial backoff to set
+   */
+  public void setInitialBackoff(Duration initialBackoff) {
+    this.initialBackoff = initialBackoff;
+  }
+
+  /**
+   * Get the max backoff.
+   * 
+   * @return the max backoff
+   */
+  public Duration getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  /**
+   * Set the max backoff.
+   * 
+   * @param maxBackoff the max backoff to set
+   */
+  public void setMaxBackoff(Duration maxBackoff) {
+    this.maxBackoff = maxBackoff;
+  }
+
+  /**
+   * Get the multiplier.
+   * 
+   * @return the multiplier
+   */
+  public double getMultiplier() {
+    return multiplier;
+  }
+
+  /**
+   * Set the multiplier.
+   * 
+   * @param multiplier the multiplier to set
+   */
+  public void setMultiplier(double multiplier) {
+    this.multiplier = multiplier;
+  }
+}
@@ -0,0 +1,135 @@
+package com.gpaglia.springlock.locking;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import javax.persistence.OptimisticLockException;
+
+import org.hibernate.StaleStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs a unit of work in its own transaction, re-running it when the commit
+ * fails on an optimistic lock conflict, e.g. a force-incremented {@code Parent.version}
+ * changed by a concurrent transaction.
+ *
+ * <p>Attempts are separated by an exponential backoff with jitter and bounded by
+ * {@link OptimisticRetryProperties#getMaxAttempts()}; the last failure is rethrown
+ * once they are exhausted. The unit of work must be repeatable, as it is run from
+ * scratch with a fresh persistence context on each attempt.
+ */
+@Component
+public class OptimisticRetryTemplate {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OptimisticRetryTemplate.class);
+
+  private final TransactionTemplate txTemplate;
+  private final OptimisticRetryProperties props;
+
+  @Autowired
+  public OptimisticRetryTemplate(
+      PlatformTransactionManager txManager,
+      OptimisticRetryProperties props
+  ) {
+    this.txTemplate = new TransactionTemplate(txManager);
+    this.props = props;
+  }
+
+  /**
+   * Execute the action in a new transaction, retrying on optimistic lock failures.
+   *
+   * @param <T> the result type
+   * @param action the unit of work
+   * @return the result of the successful attempt
+   * @throws IllegalStateException if called within an active transaction, as the
+   *     conflict would only surface at the commit of the outer transaction
+   */
+  public <T> T execute(TransactionCallback<T> action) {
+    return execute(action, e -> { });
+  }
+
+  /**
+   * Execute the action in a new transaction, retrying on optimistic lock failures
+   * and notifying each of them, including the last one, to the given listener.
+   *
+   * @param <T> the result type
+   * @param action the unit of work
+   * @param onConflict called with each optimistic lock failure
+   * @return the result of the successful attempt
+   * @throws IllegalStateException if called within an active transaction
+   */
+  public <T> T execute(TransactionCallback<T> action, Consumer<RuntimeException> onConflict) {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException(
+          "OptimisticRetryTemplate must be called outside of a transaction");
+    }
+
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return txTemplate.execute(action);
+      } catch (RuntimeException e) {
+        if (!isOptimisticFailure(e)) {
+          throw e;
+        }
+
+        onConflict.accept(e);
+        if (attempt >= props.getMaxAttempts()) {
+          throw e;
+        }
+
+        long backoff = backoffMillis(attempt);
+        LOGGER.debug("Optimistic lock failure on attempt {}, retrying in {} ms: {}",
+            attempt, backoff, e.getMessage());
+
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Check whether the exception, or one of its causes, is an optimistic lock failure.
+   *
+   * @param e the exception
+   * @return true if the failure is an optimistic lock conflict
+   */
+  public static boolean isOptimisticFailure(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof OptimisticLockingFailureException
+          || t instanceof OptimisticLockException
+          || t instanceof StaleStateException) {
+        return true;
+      }
+      if (t.getCause() == t) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compute the backoff before the next attempt: half of the exponential delay
+   * is fixed, the other half is random.
+   *
+   * @param attempt the failed attempt, starting at 1
+   * @return the backoff in millis
+   */
+  long backoffMillis(int attempt) {
+    double delay = props.getInitialBackoff().toMillis()
+        * Math.pow(props.getMultiplier(), attempt - 1);
+    long capped = (long) Math.min(delay, props.getMaxBackoff().toMillis());
+    long half = capped / 2;
+    return half + ThreadLocalRandom.current().nextLong(capped - half + 1);
+  }
+}
@@ -0,0 +1,189 @@
+package com.gpaglia.springlock.locking;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Fixed set of in-JVM locks selected by parent id hash.
+ *
+ * <p>Writers on the same parent within this JVM queue on its stripe before opening
+ * their transaction, so that only one of them at a time holds a pooled connection
+ * while waiting on the row lock taken by {@code ParentRepository.pessimisticFindById}.
+ * Parents sharing a stripe are serialized as well, which is the price of the bounded
+ * memory; the stripe count trades that against footprint. Writers on other nodes are
+ * still serialized by the database lock only.
+ *
+ * <p>Writers on many parents take their stripes in ascending stripe order, so that two
+ * of them never wait for each other's stripes.
+ */
+@Component
+public class ParentLockStripes {
+
+  private final ReentrantLock[] stripes;
+  private final int mask;
+  private final long timeoutNanos;
+  private final TransactionTemplate txTemplate;
+  private final ParentRepository parentRepo;
+
+  @Autowired
+  public ParentLockStripes(
+      PlatformTransactionManager txManager,
+      LockStripesProperties props,
+      ParentRepository parentRepo
+  ) {
+    int n = props.getCount() <= 1 ? 1 : Integer.highestOneBit(props.getCount() - 1) << 1;
+    this.stripes = new ReentrantLock[n];
+    for (int i = 0; i < n; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    this.mask = n - 1;
+    this.timeoutNanos = props.getTimeout().toNanos();
+    this.txTemplate = new TransactionTemplate(txManager);
+    this.parentRepo = parentRepo;
+  }
+
+  /**
+   * Execute the action in a new transaction while holding the stripe of the parent.
+   *
+   * @param <T> the result type
+   * @param id the parent id
+   * @param action the unit of work, typically starting with a pessimistic find
+   * @return the result of the action
+   * @throws CannotAcquireLockException if the stripe is not acquired within the timeout
+   * @throws IllegalStateException if called within an active transaction, as the
+   *     connection would be held while waiting on the stripe
+   */
+  public <T> T executeLocked(Long id, TransactionCallback<T> action) {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException(
+          "ParentLockStripes must be acquired outside of a transaction");
+    }
+
+    final ReentrantLock lock = stripeFor(id);
+    acquire(lock, id);
+    try {
+      return txTemplate.execute(action);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Execute the action in a new transaction while holding the stripes of the parents,
+   * acquired in ascending stripe order and released whatever the outcome.
+   *
+   * @param <T> the result type
+   * @param ids the parent ids, in any order
+   * @param action the unit of work, typically starting with a pessimistic find
+   * @return the result of the action
+   * @throws CannotAcquireLockException if a stripe is not acquired within the timeout,
+   *     the ones acquired before it being released
+   * @throws IllegalStateException if called within an active transaction
+   */
+  public <T> T executeLocked(Collection<Long> ids, TransactionCallback<T> action) {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException(
+          "ParentLockStripes must be acquired outside of a transaction");
+    }
+
+    final TreeSet<Integer> indexes = new TreeSet<>();
+    ids.forEach(id -> indexes.add(indexFor(id)));
+
+    final Deque<ReentrantLock> held = new ArrayDeque<>(indexes.size());
+    try {
+      for (int index : indexes) {
+        acquire(stripes[index], firstIdOf(ids, index));
+        held.push(stripes[index]);
+      }
+      return txTemplate.execute(action);
+    } finally {
+      held.forEach(ReentrantLock::unlock);
+    }
+  }
+
+  /**
+   * Lock the parent with {@link ParentRepository#pessimisticFindById(Long)} in a new
+   * transaction, once its stripe is held, and apply the work to it.
+   *
+   * @param <T> the result type
+   * @param id the parent id
+   * @param work the work on the locked parent
+   * @return the result of the work
+   * @throws ObjectRetrievalFailureException if the parent does not exist
+   * @throws CannotAcquireLockException if the stripe is not acquired within the timeout
+   * @throws IllegalStateException if called within an active transaction
+   */
+  public <T> T execute(Long id, Function<Parent, T> work) {
+    return executeLocked(id, status -> work.apply(parentRepo.pessimisticFindById(id)
+        .orElseThrow(() -> new ObjectRetrievalFailureException(Parent.class, id))));
+  }
+
+  /**
+   * Lock the parents with {@link ParentRepository#pessimisticFindAllById(Collection)}
+   * in a new transaction, once their stripes are held, and apply the work to them.
+   *
+   * @param <T> the result type
+   * @param ids the parent ids, in any order
+   * @param work the work on the locked parents, by id
+   * @return the result of the work
+   * @throws ObjectRetrievalFailureException if any parent does not exist
+   * @throws CannotAcquireLockException if a stripe is not acquired within the timeout
+   * @throws IllegalStateException if called within an active transaction
+   */
+  public <T> T execute(Collection<Long> ids, Function<List<Parent>, T> work) {
+    return executeLocked(ids, status -> work.apply(parentRepo.pessimisticFindAllById(ids)));
+  }
+
+  /**
+   * Get the stripe of a parent.
+   *
+   * @param id the parent id
+   * @return the stripe lock
+   */
+  public ReentrantLock stripeFor(Long id) {
+    return stripes[indexFor(id)];
+  }
+
+  int indexFor(Long id) {
+    int h = id.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /**
+   * The first of the ids mapped to a stripe, to report a timeout.
+   */
+  private Long firstIdOf(Collection<Long> ids, int index) {
+    return ids.stream().filter(id -> indexFor(id) == index).findFirst().orElse(null);
+  }
+
+  private void acquire(ReentrantLock lock, Long id) {
+    try {
+      if (!lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+        throw new CannotAcquireLockException(
+            "Timed out waiting for the in-JVM lock of parent " + id);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CannotAcquireLockException(
+          "Interrupted waiting for the in-JVM lock of parent " + id, e);
+    }
+  }
+}
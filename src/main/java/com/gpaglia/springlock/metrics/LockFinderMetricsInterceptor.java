@@ -0,0 +1,85 @@
+package com.gpaglia.springlock.metrics;
+
+import com.gpaglia.springlock.repositories.LockFinder;
+import com.gpaglia.springlock.repositories.LockStrategy;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.jpa.repository.Lock;
+
+/**
+ * Times the repository methods annotated with a {@link Lock}, or a {@link LockFinder}
+ * for the custom ones, or taking the lock to acquire as a {@link LockStrategy} argument;
+ * the others are passed through.
+ */
+class LockFinderMetricsInterceptor implements MethodInterceptor {
+
+  private final ObjectProvider<PersistenceMetrics> metrics;
+  private final Map<Method, Optional<Function<Object[], String>>> modes =
+      new ConcurrentHashMap<>();
+
+  LockFinderMetricsInterceptor(ObjectProvider<PersistenceMetrics> metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    final Method method = invocation.getMethod();
+    final Optional<Function<Object[], String>> mode =
+        modes.computeIfAbsent(method, LockFinderMetricsInterceptor::lockMode);
+
+    if (!mode.isPresent()) {
+      return invocation.proceed();
+    }
+
+    final long start = System.nanoTime();
+    Throwable failure = null;
+    try {
+      return invocation.proceed();
+    } catch (Throwable t) {
+      failure = t;
+      throw t;
+    } finally {
+      metrics.getObject().recordLockAcquire(
+          method.getName(),
+          mode.get().apply(invocation.getArguments()),
+          System.nanoTime() - start,
+          failure);
+    }
+  }
+
+  /**
+   * The lock mode of a method, from its arguments, if it is a lock finder.
+   */
+  private static Optional<Function<Object[], String>> lockMode(Method method) {
+    final Lock lock = AnnotatedElementUtils.findMergedAnnotation(method, Lock.class);
+    if (lock != null) {
+      final String name = lock.value().name();
+      return Optional.of(args -> name);
+    }
+    final LockFinder finder = AnnotatedElementUtils.findMergedAnnotation(method, LockFinder.class);
+    if (finder != null) {
+      final String name = finder.value().name();
+      return Optional.of(args -> name);
+    }
+
+    final Class<?>[] types = method.getParameterTypes();
+    for (int i = 0; i < types.length; i++) {
+      if (types[i] == LockStrategy.class) {
+        final int index = i;
+        return Optional.of(args -> args[index] == null
+            ? "NONE"
+            : ((LockStrategy) args[index]).getLockMode().name());
+      }
+    }
+    return Optional.empty();
+  }
+}
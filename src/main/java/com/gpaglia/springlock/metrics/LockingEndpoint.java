@@ -0,0 +1,107 @@
+package com.gpaglia.springlock.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * The {@code locking} actuator endpoint, a summary of the persistence meters: where the
+ * time goes and what fails when the lock contention rises.
+ */
+@Component
+@Endpoint(id = "locking")
+public class LockingEndpoint {
+
+  private final MeterRegistry registry;
+
+  @Autowired
+  public LockingEndpoint(PersistenceMetrics metrics) {
+    this.registry = metrics.getRegistry();
+  }
+
+  /**
+   * The summary of the persistence meters.
+   *
+   * @return the summary
+   */
+  @ReadOperation
+  public Map<String, Object> locking() {
+    final Map<String, Object> result = new LinkedHashMap<>();
+
+    final List<Map<String, Object>> finders = new ArrayList<>();
+    for (Timer t : registry.find(PersistenceMetrics.LOCK_ACQUIRE).timers()) {
+      Map<String, Object> finder = new LinkedHashMap<>();
+      finder.put("method", t.getId().getTag("method"));
+      finder.put("mode", t.getId().getTag("mode"));
+      finder.put("outcome", t.getId().getTag("outcome"));
+      finder.putAll(timer(t));
+      finders.add(finder);
+    }
+    result.put("lockAcquire", finders);
+
+    final Map<String, Object> commits = new TreeMap<>();
+    for (Timer t : registry.find(PersistenceMetrics.COMMIT).timers()) {
+      commits.put(t.getId().getTag("outcome"), timer(t));
+    }
+    result.put("commits", commits);
+
+    result.put("optimisticConflicts", counts(PersistenceMetrics.OPTIMISTIC_CONFLICTS, "entity"));
+    result.put("pessimisticTimeouts", counts(PersistenceMetrics.PESSIMISTIC_TIMEOUTS, "exception"));
+
+    Timer flush = registry.find(SessionMetricsListener.FLUSH).timer();
+    if (flush != null) {
+      result.put("flush", timer(flush));
+    }
+    DistributionSummary statements = registry.find(SessionMetricsListener.STATEMENTS).summary();
+    if (statements != null) {
+      Map<String, Object> s = new LinkedHashMap<>();
+      s.put("transactions", statements.count());
+      s.put("mean", statements.mean());
+      s.put("max", statements.max());
+      result.put("statementsPerTransaction", s);
+    }
+    Timer connection = registry.find(SessionMetricsListener.CONNECTION_ACQUIRE).timer();
+    if (connection != null) {
+      result.put("connectionAcquire", timer(connection));
+    }
+    Timer hold = registry.find(SessionMetricsListener.CONNECTION_HOLD).timer();
+    if (hold != null) {
+      result.put("connectionHold", timer(hold));
+    }
+    Gauge pool = registry.find(PersistenceMetrics.POOL_USAGE).gauge();
+    if (pool != null) {
+      result.put("poolUsage", pool.value());
+    }
+    return result;
+  }
+
+  private Map<String, Long> counts(String name, String tag) {
+    final Map<String, Long> counts = new TreeMap<>();
+    for (Counter c : registry.find(name).counters()) {
+      counts.merge(c.getId().getTag(tag), (long) c.count(), Long::sum);
+    }
+    return counts;
+  }
+
+  private static Map<String, Object> timer(Timer t) {
+    final Map<String, Object> m = new LinkedHashMap<>();
+    m.put("count", t.count());
+    m.put("meanMs", t.mean(TimeUnit.MILLISECONDS));
+    m.put("maxMs", t.max(TimeUnit.MILLISECONDS));
+    return m;
+  }
+}
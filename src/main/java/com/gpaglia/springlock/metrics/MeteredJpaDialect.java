@@ -0,0 +1,33 @@
+package com.gpaglia.springlock.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+
+/**
+ * The hibernate dialect, counting the locking failures it translates.
+ *
+ * <p>Both the transaction manager and the repositories translate the persistence
+ * exceptions through the dialect, which therefore sees once each optimistic and
+ * pessimistic failure raised at commit or by a repository method. Failures of the
+ * shared entity manager, e.g. of an explicit flush, are not translated and only
+ * counted if they then fail the commit.
+ */
+class MeteredJpaDialect extends HibernateJpaDialect {
+  private static final long serialVersionUID = 1L;
+
+  private final transient ObjectProvider<PersistenceMetrics> metrics;
+
+  MeteredJpaDialect(ObjectProvider<PersistenceMetrics> metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+    DataAccessException translated = super.translateExceptionIfPossible(ex);
+    if (translated != null) {
+      metrics.getObject().recordTranslated(ex, translated);
+    }
+    return translated;
+  }
+}
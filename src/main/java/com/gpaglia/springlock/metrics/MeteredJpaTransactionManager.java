@@ -0,0 +1,37 @@
+package com.gpaglia.springlock.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * The jpa transaction manager, timing the commits.
+ */
+public class MeteredJpaTransactionManager extends JpaTransactionManager {
+  private static final long serialVersionUID = 1L;
+
+  private final transient ObjectProvider<PersistenceMetrics> metrics;
+
+  /**
+   * Create the transaction manager.
+   *
+   * @param metrics the metrics
+   */
+  public MeteredJpaTransactionManager(ObjectProvider<PersistenceMetrics> metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  protected void doCommit(DefaultTransactionStatus status) {
+    final long start = System.nanoTime();
+    RuntimeException failure = null;
+    try {
+      super.doCommit(status);
+    } catch (RuntimeException e) {
+      failure = e;
+      throw e;
+    } finally {
+      metrics.getObject().recordCommit(System.nanoTime() - start, failure);
+    }
+  }
+}
@@ -0,0 +1,251 @@
+package com.gpaglia.springlock.metrics;
+
+import com.gpaglia.springlock.locking.OptimisticRetryTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+import javax.sql.DataSource;
+
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.exception.LockAcquisitionException;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.metadata.CompositeDataSourcePoolMetadataProvider;
+import org.springframework.boot.jdbc.metadata.DataSourcePoolMetadata;
+import org.springframework.boot.jdbc.metadata.DataSourcePoolMetadataProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The meters of the persistence layer.
+ *
+ * <ul>
+ * <li>{@value #LOCK_ACQUIRE}: time of the repository finders annotated with a lock mode,
+ * tagged with the method, the lock mode and the outcome</li>
+ * <li>{@value #COMMIT}: time of the transaction commits, flush included, tagged with the
+ * outcome</li>
+ * <li>{@value #OPTIMISTIC_CONFLICTS}: optimistic locking failures, tagged with the entity</li>
+ * <li>{@value #PESSIMISTIC_TIMEOUTS}: pessimistic locks not acquired, tagged with the
+ * exception</li>
+ * <li>{@value #POOL_USAGE}: active over max connections of the pool</li>
+ * </ul>
+ *
+ * <p>The per session meters are recorded by the {@link SessionMetricsListener}. Outcomes
+ * are {@code ok}, {@code conflict} for optimistic failures, {@code timeout} for
+ * pessimistic ones and {@code error} for anything else.
+ */
+@Component
+public class PersistenceMetrics {
+
+  public static final String LOCK_ACQUIRE = "springlock.lock.acquire";
+  public static final String COMMIT = "springlock.tx.commit";
+  public static final String OPTIMISTIC_CONFLICTS = "springlock.optimistic.conflicts";
+  public static final String PESSIMISTIC_TIMEOUTS = "springlock.pessimistic.timeouts";
+  public static final String POOL_USAGE = "springlock.pool.usage";
+
+  /** The table of the failed statement, in the messages of the batched version checks. */
+  private static final Pattern STATEMENT_TABLE =
+      Pattern.compile("(?i)\\b(?:update\\s+([\\w.]+)\\s+set|delete\\s+from\\s+([\\w.]+))\\b");
+
+  private final MeterRegistry registry;
+  private final ObjectProvider<EntityManagerFactory> emf;
+  private volatile Map<String, String> entitiesByTable;
+
+  @Autowired
+  public PersistenceMetrics(
+      ObjectProvider<MeterRegistry> registry,
+      ObjectProvider<EntityManagerFactory> emf,
+      ObjectProvider<DataSource> dataSource,
+      ObjectProvider<DataSourcePoolMetadataProvider> poolMetadataProviders
+  ) {
+    this.registry = registry.getIfAvailable(() -> Metrics.globalRegistry);
+    this.emf = emf;
+
+    DataSource ds = dataSource.getIfUnique();
+    if (ds != null) {
+      DataSourcePoolMetadata pool = new CompositeDataSourcePoolMetadataProvider(
+          poolMetadataProviders.orderedStream().collect(Collectors.toList()))
+          .getDataSourcePoolMetadata(ds);
+      if (pool != null) {
+        this.registry.gauge(POOL_USAGE, pool, p -> {
+          Float usage = p.getUsage();
+          return usage != null ? usage : Double.NaN;
+        });
+      }
+    }
+  }
+
+  /**
+   * Get the registry.
+   *
+   * @return the registry
+   */
+  public MeterRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Record a finder call with a lock mode.
+   *
+   * @param method the finder name
+   * @param lockMode the lock mode
+   * @param nanos the elapsed time
+   * @param failure the failure, null if none
+   */
+  public void recordLockAcquire(String method, String lockMode, long nanos, Throwable failure) {
+    Timer.builder(LOCK_ACQUIRE)
+        .description("Time to load an entity with a lock mode")
+        .tag("method", method)
+        .tag("mode", lockMode)
+        .tag("outcome", outcome(failure))
+        .register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Record a transaction commit.
+   *
+   * @param nanos the elapsed time
+   * @param failure the failure, null if none
+   */
+  public void recordCommit(long nanos, Throwable failure) {
+    Timer.builder(COMMIT)
+        .description("Time to commit a transaction, flush included")
+        .tag("outcome", outcome(failure))
+        .register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Count a persistence exception translated to a locking failure.
+   *
+   * @param ex the persistence exception
+   * @param translated its translation
+   */
+  public void recordTranslated(RuntimeException ex, DataAccessException translated) {
+    if (translated instanceof OptimisticLockingFailureException) {
+      Counter.builder(OPTIMISTIC_CONFLICTS)
+          .description("Optimistic locking failures")
+          .tag("entity", entityOf(translated, ex))
+          .register(registry)
+          .increment();
+    } else if (translated instanceof PessimisticLockingFailureException) {
+      Counter.builder(PESSIMISTIC_TIMEOUTS)
+          .description("Pessimistic locks not acquired")
+          .tag("exception", translated.getClass().getSimpleName())
+          .register(registry)
+          .increment();
+    }
+  }
+
+  /**
+   * The outcome tag of an operation.
+   *
+   * @param failure the failure, null if none
+   * @return the outcome
+   */
+  static String outcome(Throwable failure) {
+    if (failure == null) {
+      return "ok";
+    } else if (OptimisticRetryTemplate.isOptimisticFailure(failure)) {
+      return "conflict";
+    } else if (isPessimisticFailure(failure)) {
+      return "timeout";
+    } else {
+      return "error";
+    }
+  }
+
+  /**
+   * Whether the failure, or any of its causes, is a pessimistic lock not acquired.
+   *
+   * @param e the failure
+   * @return true if a pessimistic locking failure
+   */
+  static boolean isPessimisticFailure(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof PessimisticLockingFailureException
+          || t instanceof PessimisticLockException
+          || t instanceof LockTimeoutException
+          || t instanceof org.hibernate.PessimisticLockException
+          || t instanceof LockAcquisitionException) {
+        return true;
+      }
+      if (t.getCause() == t) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  private String entityOf(DataAccessException translated, Throwable ex) {
+    if (translated instanceof ObjectOptimisticLockingFailureException) {
+      String name = ((ObjectOptimisticLockingFailureException) translated).getPersistentClassName();
+      if (name != null) {
+        return ClassUtils.getShortName(name);
+      }
+    }
+    for (Throwable t = ex; t != null && t.getCause() != t; t = t.getCause()) {
+      if (t instanceof StaleObjectStateException) {
+        return ClassUtils.getShortName(((StaleObjectStateException) t).getEntityName());
+      }
+      if (t instanceof OptimisticLockException && ((OptimisticLockException) t).getEntity() != null) {
+        return ClassUtils.getUserClass(((OptimisticLockException) t).getEntity()).getSimpleName();
+      }
+    }
+
+    // a failed batch only reports its statement
+    Matcher m = STATEMENT_TABLE.matcher(String.valueOf(ex.getMessage()));
+    if (m.find()) {
+      String table = m.group(1) != null ? m.group(1) : m.group(2);
+      String entity = entitiesByTable().get(table.toLowerCase(Locale.ROOT));
+      if (entity != null) {
+        return entity;
+      }
+    }
+    return "unknown";
+  }
+
+  private Map<String, String> entitiesByTable() {
+    Map<String, String> tables = entitiesByTable;
+    if (tables == null) {
+      tables = new HashMap<>();
+      EntityManagerFactory factory = emf.getIfUnique();
+      if (factory != null) {
+        for (Object p : factory.unwrap(SessionFactoryImplementor.class)
+            .getMetamodel()
+            .entityPersisters()
+            .values()) {
+          if (p instanceof AbstractEntityPersister) {
+            AbstractEntityPersister persister = (AbstractEntityPersister) p;
+            tables.put(persister.getTableName().toLowerCase(Locale.ROOT),
+                ClassUtils.getShortName(persister.getEntityName()));
+          }
+        }
+      }
+      entitiesByTable = tables;
+    }
+    return tables;
+  }
+}
@@ -0,0 +1,54 @@
+package com.gpaglia.springlock.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Wiring of the {@link PersistenceMetrics} into the persistence layer.
+ */
+@Configuration
+public class PersistenceMetricsConfiguration {
+
+  /**
+   * The post processor of the entity manager factory and the repositories.
+   *
+   * @param metrics the metrics
+   * @return the post processor
+   */
+  @Bean
+  static PersistenceMetricsPostProcessor persistenceMetricsPostProcessor(
+      ObjectProvider<PersistenceMetrics> metrics) {
+    return new PersistenceMetricsPostProcessor(metrics);
+  }
+
+  /**
+   * The transaction manager, in place of the spring boot one.
+   *
+   * @param metrics the metrics
+   * @param customizers the transaction manager customizers
+   * @return the transaction manager
+   */
+  @Bean
+  public PlatformTransactionManager transactionManager(
+      ObjectProvider<PersistenceMetrics> metrics,
+      ObjectProvider<TransactionManagerCustomizers> customizers) {
+    MeteredJpaTransactionManager tm = new MeteredJpaTransactionManager(metrics);
+    customizers.ifAvailable(c -> c.customize(tm));
+    return tm;
+  }
+
+  /**
+   * Register the {@link SessionMetricsListener}, unless another session listener is set.
+   *
+   * @return the customizer
+   */
+  @Bean
+  public HibernatePropertiesCustomizer sessionMetricsCustomizer() {
+    return props -> props.putIfAbsent(
+        "hibernate.session.events.auto", SessionMetricsListener.class.getName());
+  }
+}
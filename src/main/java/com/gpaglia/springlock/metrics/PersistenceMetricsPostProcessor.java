@@ -0,0 +1,70 @@
+package com.gpaglia.springlock.metrics;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.projection.DefaultMethodInvokingMethodInterceptor;
+import org.springframework.data.repository.Repository;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+/**
+ * Instruments the persistence beans.
+ *
+ * <ul>
+ * <li>the hibernate entity manager factory gets the {@link MeteredJpaDialect}, before it is
+ * initialized and hands its dialect to the transaction manager</li>
+ * <li>the repositories get the {@link LockFinderMetricsInterceptor}, inside their
+ * transaction and exception translation interceptors, so that only the query and
+ * its lock are timed</li>
+ * </ul>
+ */
+class PersistenceMetricsPostProcessor implements BeanPostProcessor {
+
+  private final ObjectProvider<PersistenceMetrics> metrics;
+  private final Advisor lockFinderAdvisor;
+
+  PersistenceMetricsPostProcessor(ObjectProvider<PersistenceMetrics> metrics) {
+    this.metrics = metrics;
+    this.lockFinderAdvisor = new DefaultPointcutAdvisor(new LockFinderMetricsInterceptor(metrics));
+  }
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) {
+    if (bean instanceof AbstractEntityManagerFactoryBean) {
+      AbstractEntityManagerFactoryBean emf = (AbstractEntityManagerFactoryBean) bean;
+      if (emf.getJpaDialect() == null
+          && emf.getJpaVendorAdapter() instanceof HibernateJpaVendorAdapter) {
+        emf.setJpaDialect(new MeteredJpaDialect(metrics));
+      }
+    }
+    return bean;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (bean instanceof Repository && bean instanceof Advised) {
+      Advised advised = (Advised) bean;
+      if (!advised.isFrozen()) {
+        advised.addAdvisor(queryExecutionIndex(advised), lockFinderAdvisor);
+      }
+    }
+    return bean;
+  }
+
+  /**
+   * The position of the first advisor executing the repository methods, which follows
+   * the ones added by the repository post processors.
+   */
+  private static int queryExecutionIndex(Advised advised) {
+    Advisor[] advisors = advised.getAdvisors();
+    for (int i = 0; i < advisors.length; i++) {
+      if (advisors[i].getAdvice() instanceof DefaultMethodInvokingMethodInterceptor) {
+        return i;
+      }
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,98 @@
+package com.gpaglia.springlock.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Records the per session meters, one listener being created by hibernate for each session.
+ *
+ * <ul>
+ * <li>{@value #FLUSH}: time of the flushes</li>
+ * <li>{@value #STATEMENTS}: jdbc round trips, statements or batches, per transaction</li>
+ * <li>{@value #CONNECTION_ACQUIRE}: time to get a connection from the pool</li>
+ * <li>{@value #CONNECTION_HOLD}: time a connection is held, until released to the pool</li>
+ * </ul>
+ *
+ * <p>Hibernate instantiates the listener by class name, so it records to the
+ * {@link Metrics#globalRegistry}, which spring boot composes the application
+ * registry into.
+ */
+public class SessionMetricsListener extends BaseSessionEventListener {
+  private static final long serialVersionUID = 1L;
+
+  public static final String FLUSH = "springlock.session.flush";
+  public static final String STATEMENTS = "springlock.session.statements";
+  public static final String CONNECTION_ACQUIRE = "springlock.session.connection.acquire";
+  public static final String CONNECTION_HOLD = "springlock.session.connection.hold";
+
+  private static final Timer FLUSH_TIMER = Timer.builder(FLUSH)
+      .description("Time to flush a session")
+      .register(Metrics.globalRegistry);
+  private static final DistributionSummary STATEMENTS_SUMMARY = DistributionSummary
+      .builder(STATEMENTS)
+      .description("Jdbc round trips per transaction")
+      .register(Metrics.globalRegistry);
+  private static final Timer CONNECTION_TIMER = Timer.builder(CONNECTION_ACQUIRE)
+      .description("Time to get a connection from the pool")
+      .register(Metrics.globalRegistry);
+  private static final Timer HOLD_TIMER = Timer.builder(CONNECTION_HOLD)
+      .description("Time a connection is held, until released to the pool")
+      .register(Metrics.globalRegistry);
+
+  private long flushStart;
+  private long connectionStart;
+  private long holdStart;
+  private long statements;
+
+  @Override
+  public void jdbcConnectionAcquisitionStart() {
+    connectionStart = System.nanoTime();
+  }
+
+  @Override
+  public void jdbcConnectionAcquisitionEnd() {
+    holdStart = System.nanoTime();
+    CONNECTION_TIMER.record(holdStart - connectionStart, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void jdbcConnectionReleaseStart() {
+    // not at the end of the release: a pool may hand the connection over to a waiting
+    // thread before returning from it
+    if (holdStart != 0) {
+      HOLD_TIMER.record(System.nanoTime() - holdStart, TimeUnit.NANOSECONDS);
+      holdStart = 0;
+    }
+  }
+
+  @Override
+  public void jdbcExecuteStatementStart() {
+    statements++;
+  }
+
+  @Override
+  public void jdbcExecuteBatchStart() {
+    statements++;
+  }
+
+  @Override
+  public void flushStart() {
+    flushStart = System.nanoTime();
+  }
+
+  @Override
+  public void flushEnd(int numberOfEntities, int numberOfCollections) {
+    FLUSH_TIMER.record(System.nanoTime() - flushStart, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void transactionCompletion(boolean successful) {
+    STATEMENTS_SUMMARY.record(statements);
+    statements = 0;
+  }
+}
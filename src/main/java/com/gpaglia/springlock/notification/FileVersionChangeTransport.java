@@ -0,0 +1,168 @@
+package com.gpaglia.springlock.notification;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link VersionChangeTransport} over a log file shared by the nodes of one host,
+ * e.g. for tests: each node appends its changes to the file, one line each, and reads
+ * those appended by the others every poll interval.
+ *
+ * <p>The lines are {@code node TAB id TAB version TAB U|D}, appended with a single write
+ * of each transaction. A node started reads the changes appended from then on.
+ */
+public class FileVersionChangeTransport implements VersionChangeTransport {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileVersionChangeTransport.class);
+
+  private final Path file;
+  private final String nodeId;
+  private final Duration pollInterval;
+
+  private final FileChannel appender;
+  private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+  private ScheduledExecutorService poller;
+  private FileChannel reader;
+  private long position;
+
+  /**
+   * Create the transport, and the log file if missing.
+   *
+   * @param file the log file
+   * @param nodeId the id of this node, whose changes are not delivered back
+   * @param pollInterval the time between two reads of the file
+   * @throws UncheckedIOException if the file cannot be opened
+   */
+  public FileVersionChangeTransport(Path file, String nodeId, Duration pollInterval) {
+    if (nodeId.indexOf('\t') >= 0 || nodeId.indexOf('\n') >= 0) {
+      throw new IllegalArgumentException("Invalid node id: " + nodeId);
+    }
+    this.file = file;
+    this.nodeId = nodeId;
+    this.pollInterval = pollInterval;
+    try {
+      this.appender = FileChannel.open(file,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void start(Consumer<ParentVersionChange> receiver) {
+    if (poller != null) {
+      throw new IllegalStateException("FileVersionChangeTransport already started");
+    }
+    try {
+      reader = FileChannel.open(file, StandardOpenOption.READ);
+      position = reader.size();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    poller = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "springlock-notification-" + file.getFileName());
+      t.setDaemon(true);
+      return t;
+    });
+    final long interval = pollInterval.toMillis();
+    poller.scheduleWithFixedDelay(() -> poll(receiver), interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void send(List<ParentVersionChange> changes) {
+    final StringBuilder lines = new StringBuilder(changes.size() * 48);
+    for (ParentVersionChange c : changes) {
+      lines.append(c.getNode()).append('\t')
+          .append(c.getId()).append('\t')
+          .append(c.getVersion()).append('\t')
+          .append(c.isDeleted() ? 'D' : 'U').append('\n');
+    }
+    final ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+    try {
+      synchronized (appender) {
+        while (bytes.hasRemaining()) {
+          appender.write(bytes);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void poll(Consumer<ParentVersionChange> receiver) {
+    try {
+      final ByteBuffer buf = ByteBuffer.allocate(8192);
+      int read;
+      while ((read = reader.read(buf, position)) > 0) {
+        position += read;
+        buf.flip();
+        while (buf.hasRemaining()) {
+          final byte b = buf.get();
+          if (b == '\n') {
+            deliver(partial.toString(StandardCharsets.UTF_8.name()), receiver);
+            partial.reset();
+          } else {
+            partial.write(b);
+          }
+        }
+        buf.clear();
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Reading the version changes of {} failed", file, e);
+    }
+  }
+
+  private void deliver(String line, Consumer<ParentVersionChange> receiver) {
+    final String[] fields = line.split("\t");
+    if (fields.length != 4) {
+      LOGGER.warn("Invalid version change skipped: {}", line);
+      return;
+    }
+    if (fields[0].equals(nodeId)) {
+      return;
+    }
+    try {
+      receiver.accept(new ParentVersionChange(
+          fields[0], Long.valueOf(fields[1]), Long.parseLong(fields[2]), "D".equals(fields[3])));
+    } catch (RuntimeException e) {
+      // the next changes are still delivered
+      LOGGER.warn("Version change not delivered: {}", line, e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (poller != null) {
+      poller.shutdown();
+      try {
+        poller.awaitTermination(pollInterval.toMillis() + 5_000, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      appender.close();
+      if (reader != null) {
+        reader.close();
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Closing {} failed", file, e);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.gpaglia.springlock.notification;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.hibernate.AppendingIntegratorProvider;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Notification of the committed parent version changes, enabled by
+ * {@code springlock.notification.enabled=true}: the {@link ParentVersionTracker} finds
+ * them, the {@link ParentVersionBus} publishes them in process and sends them to the
+ * other nodes over the {@link VersionChangeTransport}, if any.
+ *
+ * <p>The parents changed by the other nodes are evicted from the second level cache.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "springlock.notification", name = "enabled", havingValue = "true")
+public class NotificationConfiguration {
+
+  /** Looked up lazily, the listeners of its session factory depending on the bus. */
+  private final ObjectProvider<EntityManagerFactory> emf;
+
+  @Autowired
+  public NotificationConfiguration(ObjectProvider<EntityManagerFactory> emf) {
+    this.emf = emf;
+  }
+
+  /**
+   * Register the {@link ParentVersionTracker}.
+   *
+   * @param bus the bus
+   * @return the customizer
+   */
+  @Bean
+  public HibernatePropertiesCustomizer parentVersionTrackerCustomizer(ParentVersionBus bus) {
+    return props -> AppendingIntegratorProvider.append(props, new TrackerIntegrator(bus));
+  }
+
+  /**
+   * The file transport, with {@code springlock.notification.transport=file}.
+   *
+   * @param props the notification properties
+   * @return the transport
+   */
+  @Bean
+  @ConditionalOnMissingBean(VersionChangeTransport.class)
+  @ConditionalOnProperty(prefix = "springlock.notification", name = "transport", havingValue = "file")
+  public FileVersionChangeTransport fileVersionChangeTransport(NotificationProperties props) {
+    if (props.getFile() == null) {
+      throw new IllegalStateException("springlock.notification.file is not set");
+    }
+    return new FileVersionChangeTransport(props.getFile(), props.getNodeId(),
+        props.getPollInterval());
+  }
+
+  /**
+   * Evict from the second level cache the parents changed by the other nodes.
+   *
+   * @param event the change
+   */
+  @EventListener(condition = "!#event.local")
+  public void evictRemoteChange(ParentVersionChangedEvent event) {
+    emf.getObject().getCache().evict(Parent.class, event.getId());
+  }
+
+  /**
+   * Appends the {@link ParentVersionTracker} to the flush, post update and post delete
+   * listeners.
+   */
+  static class TrackerIntegrator implements Integrator {
+    private final ParentVersionBus bus;
+
+    TrackerIntegrator(ParentVersionBus bus) {
+      this.bus = bus;
+    }
+
+    @Override
+    public void integrate(
+        Metadata metadata,
+        SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+      final ParentVersionTracker tracker = new ParentVersionTracker(bus);
+      final EventListenerRegistry registry =
+          serviceRegistry.getService(EventListenerRegistry.class);
+      registry.appendListeners(EventType.FLUSH, tracker);
+      registry.appendListeners(EventType.POST_UPDATE, tracker);
+      registry.appendListeners(EventType.POST_DELETE, tracker);
+    }
+
+    @Override
+    public void disintegrate(
+        SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+      // nothing to release
+    }
+  }
+}
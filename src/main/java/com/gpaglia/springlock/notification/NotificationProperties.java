@@ -0,0 +1,131 @@
+package com.gpaglia.springlock.notification;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link ParentVersionBus}, bound to {@code springlock.notification.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.notification")
+public class NotificationProperties {
+
+  /**
+   * The transports between the nodes.
+   */
+  public enum Transport {
+    /** None, the changes are published in process only. */
+    NONE,
+    /** A log file shared by the nodes, see {@link FileVersionChangeTransport}. */
+    FILE
+  }
+
+  /** Whether the version changes are published. */
+  private boolean enabled = false;
+
+  /** The id of this node, unique among those sharing a transport. */
+  private String nodeId = UUID.randomUUID().toString();
+
+  /** The transport to the other nodes. */
+  private Transport transport = Transport.NONE;
+
+  /** The log file of the file transport. */
+  private Path file;
+
+  /** Time between two reads of the log file by the file transport. */
+  private Duration pollInterval = Duration.ofMillis(50);
+
+  /**
+   * Get the enabled flag.
+   *
+   * @return the enabled flag
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Set the enabled flag.
+   *
+   * @param enabled the enabled flag to set
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Get the node id.
+   *
+   * @return the node id
+   */
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Set the node id.
+   *
+   * @param nodeId the node id to set
+   */
+  public void setNodeId(String nodeId) {
+    this.nodeId = nodeId;
+  }
+
+  /**
+   * Get the transport.
+   *
+   * @return the transport
+   */
+  public Transport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Set the transport.
+   *
+   * @param transport the transport to set
+   */
+  public void setTransport(Transport transport) {
+    this.transport = transport;
+  }
+
+  /**
+   * Get the log file.
+   *
+   * @return the log file of the file transport
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Set the log file.
+   *
+   * @param file the log file of the file transport to set
+   */
+  public void setFile(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Get the poll interval.
+   *
+   * @return the poll interval of the file transport
+   */
+  public Duration getPollInterval() {
+    return pollInterval;
+  }
+
+  /**
+   * Set the poll interval.
+   *
+   * @param pollInterval the poll interval of the file transport to set
+   */
+  public void setPollInterval(Duration pollInterval) {
+    this.pollInterval = pollInterval;
+  }
+}
@@ -0,0 +1,87 @@
+package com.gpaglia.springlock.notification;
+
+import java.util.List;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the committed changes of the parent versions as
+ * {@link ParentVersionChangedEvent}s, enabled by {@code springlock.notification.enabled=true}:
+ * those of this node, found by the {@link ParentVersionTracker}, and those of the other
+ * nodes, received by the {@link VersionChangeTransport} if any.
+ *
+ * <p>The changes of this node are published on the committing thread, after commit,
+ * then sent to the other nodes; the remote ones on the thread of the transport. A
+ * cache listening to both can drop its stale parents as soon as they change, rather
+ * than checking their version on each read.
+ */
+@Component
+@ConditionalOnProperty(prefix = "springlock.notification", name = "enabled", havingValue = "true")
+public class ParentVersionBus {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParentVersionBus.class);
+
+  private final ApplicationEventPublisher publisher;
+  private final VersionChangeTransport transport;
+  private final String nodeId;
+
+  @Autowired
+  public ParentVersionBus(
+      ApplicationEventPublisher publisher,
+      NotificationProperties props,
+      ObjectProvider<VersionChangeTransport> transport
+  ) {
+    this.publisher = publisher;
+    this.nodeId = props.getNodeId();
+    this.transport = transport.getIfAvailable();
+    if (this.transport != null) {
+      this.transport.start(change -> publisher.publishEvent(
+          new ParentVersionChangedEvent(this, change, false)));
+    }
+  }
+
+  /**
+   * Get the node id.
+   *
+   * @return the id of this node
+   */
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Publish the changes committed by a transaction of this node, and send them to the
+   * other nodes. A failed send is logged, the commit being done.
+   *
+   * @param changes the changes
+   */
+  public void publish(List<ParentVersionChange> changes) {
+    for (ParentVersionChange change : changes) {
+      publisher.publishEvent(new ParentVersionChangedEvent(this, change, true));
+    }
+    if (transport != null && !changes.isEmpty()) {
+      try {
+        transport.send(changes);
+      } catch (RuntimeException e) {
+        LOGGER.error("Version changes not sent to the other nodes: {}", changes, e);
+      }
+    }
+  }
+
+  /**
+   * Stop receiving the changes of the other nodes.
+   */
+  @PreDestroy
+  public void close() {
+    if (transport != null) {
+      transport.close();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.gpaglia.springlock.notification;
+
+import java.util.Objects;
+
+/**
+ * A committed change of the version of a parent, as sent between the nodes.
+ */
+public final class ParentVersionChange {
+  private final String node;
+  private final Long id;
+  private final long version;
+  private final boolean deleted;
+
+  /**
+   * Create the change.
+   *
+   * @param node the id of the node which committed it
+   * @param id the parent id
+   * @param version the new version, or the last one of a deleted parent
+   * @param deleted whether the parent was deleted
+   */
+  public ParentVersionChange(String node, Long id, long version, boolean deleted) {
+    this.node = Objects.requireNonNull(node);
+    this.id = Objects.requireNonNull(id);
+    this.version = version;
+    this.deleted = deleted;
+  }
+
+  /**
+   * Get the node.
+   *
+   * @return the id of the node which committed the change
+   */
+  public String getNode() {
+    return node;
+  }
+
+  /**
+   * Get the id.
+   *
+   * @return the parent id
+   */
+  public Long getId() {
+    return id;
+  }
+
+  /**
+   * Get the version.
+   *
+   * @return the new version, or the last one of a deleted parent
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Get the deleted flag.
+   *
+   * @return whether the parent was deleted
+   */
+  public boolean isDeleted() {
+    return deleted;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(node, id, version, deleted);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ParentVersionChange)) {
+      return false;
+    }
+    ParentVersionChange other = (ParentVersionChange) obj;
+    return node.equals(other.node) && id.equals(other.id)
+        && version == other.version && deleted == other.deleted;
+  }
+
+  @Override
+  public String toString() {
+    return "ParentVersionChange [node=" + node + ", id=" + id + ", version=" + version
+        + (deleted ? ", deleted" : "") + "]";
+  }
+}
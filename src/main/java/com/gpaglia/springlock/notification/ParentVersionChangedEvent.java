@@ -0,0 +1,77 @@
+package com.gpaglia.springlock.notification;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published after the commit of a change of the version of a parent, by this node or,
+ * through the transport, by another one.
+ */
+public class ParentVersionChangedEvent extends ApplicationEvent {
+  private static final long serialVersionUID = 1L;
+
+  private final ParentVersionChange change;
+  private final boolean local;
+
+  /**
+   * Create the event.
+   *
+   * @param source the bus which published the change
+   * @param change the change
+   * @param local whether the change was committed by this node
+   */
+  public ParentVersionChangedEvent(Object source, ParentVersionChange change, boolean local) {
+    super(source);
+    this.change = change;
+    this.local = local;
+  }
+
+  /**
+   * Get the change.
+   *
+   * @return the change
+   */
+  public ParentVersionChange getChange() {
+    return change;
+  }
+
+  /**
+   * Get the parent id.
+   *
+   * @return the parent id
+   */
+  public Long getId() {
+    return change.getId();
+  }
+
+  /**
+   * Get the parent version.
+   *
+   * @return the new version, or the last one of a deleted parent
+   */
+  public long getVersion() {
+    return change.getVersion();
+  }
+
+  /**
+   * Get the deleted flag.
+   *
+   * @return whether the parent was deleted
+   */
+  public boolean isDeleted() {
+    return change.isDeleted();
+  }
+
+  /**
+   * Get the local flag.
+   *
+   * @return whether the change was committed by this node
+   */
+  public boolean isLocal() {
+    return local;
+  }
+
+  @Override
+  public String toString() {
+    return "ParentVersionChangedEvent [" + change + ", local=" + local + "]";
+  }
+}
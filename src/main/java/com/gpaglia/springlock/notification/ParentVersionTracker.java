@@ -0,0 +1,178 @@
+package com.gpaglia.springlock.notification;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.hibernate.LockModes;
+import com.gpaglia.springlock.hibernate.SessionState;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Collects the changes of the {@link Parent} versions of each transaction, and hands
+ * them to the {@link ParentVersionBus} once the transaction is committed.
+ *
+ * <p>Updates and deletes are seen as they are executed, whether the parent itself is
+ * dirty, or its collection of children through a cascade. Force increments are not:
+ * {@code PESSIMISTIC_FORCE_INCREMENT} and {@code OPTIMISTIC_FORCE_INCREMENT} bump the
+ * version with a dedicated update, the latter and the aggregate versioning as the
+ * transaction completes, so the force-locked parents of the persistence context are
+ * read once those are done. Each flush registers that step, the commit one included,
+ * and only the one registered last runs: it follows the increments registered before.
+ * The bulk updates of the versions are recorded with {@link #bulkUpdated}.
+ */
+public class ParentVersionTracker
+    implements FlushEventListener, PostUpdateEventListener, PostDeleteEventListener {
+  private static final long serialVersionUID = 1L;
+
+  private final transient ParentVersionBus bus;
+
+  /** The changes of each session, until its transaction completes. */
+  private final transient SessionState<Changes> changes = new SessionState<>(this::register);
+
+  /**
+   * Create the tracker.
+   *
+   * @param bus the bus to publish the changes to
+   */
+  public ParentVersionTracker(ParentVersionBus bus) {
+    this.bus = bus;
+  }
+
+  @Override
+  public void onFlush(FlushEvent event) {
+    final Changes c = changes.of(event.getSession());
+    final int flush = ++c.flushes;
+    event.getSession().getActionQueue().registerProcess(
+        (BeforeTransactionCompletionProcess) session -> {
+          if (flush == c.flushes) {
+            c.forceIncremented(session);
+          }
+        });
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    if (event.getEntity() instanceof Parent) {
+      final int index = event.getPersister().getVersionProperty();
+      final Object version = event.getState()[index];
+      final Object[] oldState = event.getOldState();
+      if (version != null && (oldState == null || !version.equals(oldState[index]))) {
+        changes.of(event.getSession()).updated((Long) event.getId(), (Long) version);
+      }
+    }
+  }
+
+  @Override
+  public void onPostDelete(PostDeleteEvent event) {
+    if (event.getEntity() instanceof Parent) {
+      final Object version = event.getDeletedState()[event.getPersister().getVersionProperty()];
+      changes.of(event.getSession()).deleted((Long) event.getId(), (Long) version);
+    }
+  }
+
+  @Override
+  public boolean requiresPostCommitHandling(EntityPersister persister) {
+    return false;
+  }
+
+  /**
+   * Abstract in hibernate 5.4, superseded by {@link #requiresPostCommitHandling}.
+   */
+  @Deprecated
+  @Override
+  public boolean requiresPostCommitHanding(EntityPersister persister) {
+    return requiresPostCommitHandling(persister);
+  }
+
+  /**
+   * Record the parent versions changed by a bulk update of the current transaction,
+   * which the listeners do not see, so that they are published once it commits. Does
+   * nothing unless the tracker is registered with the session factory.
+   *
+   * @param session the session of the transaction
+   * @param versions the new version of each parent, by id
+   */
+  public static void bulkUpdated(EventSource session, Map<Long, Long> versions) {
+    session.getFactory()
+        .getServiceRegistry()
+        .getService(EventListenerRegistry.class)
+        .getEventListenerGroup(EventType.FLUSH)
+        .fireEventOnEachListener(versions, (listener, v) -> {
+          if (listener instanceof ParentVersionTracker) {
+            final Changes c = ((ParentVersionTracker) listener).changes.of(session);
+            v.forEach(c::updated);
+          }
+        });
+  }
+
+  private Changes register(EventSource session) {
+    final Changes c = new Changes();
+    session.getActionQueue().registerProcess(c);
+    return c;
+  }
+
+  /**
+   * The parent versions changed by a transaction.
+   */
+  private class Changes implements AfterTransactionCompletionProcess {
+
+    /** The last version of each changed parent. */
+    final Map<Long, Long> versions = new LinkedHashMap<>();
+    final Set<Long> deleted = new HashSet<>();
+    int flushes;
+
+    void updated(Long id, Long version) {
+      versions.merge(id, version, Math::max);
+    }
+
+    void deleted(Long id, Long version) {
+      versions.put(id, version);
+      deleted.add(id);
+    }
+
+    void forceIncremented(SessionImplementor session) {
+      for (Map.Entry<Object, EntityEntry> e
+          : session.getPersistenceContext().reentrantSafeEntityEntries()) {
+        final EntityEntry entry = e.getValue();
+        if (e.getKey() instanceof Parent
+            && LockModes.isForceIncrement(entry.getLockMode())
+            && entry.getVersion() != null) {
+          updated((Long) entry.getId(), (Long) entry.getVersion());
+        }
+      }
+    }
+
+    @Override
+    public void doAfterTransactionCompletion(
+        boolean success, SharedSessionContractImplementor session) {
+      if (!success || versions.isEmpty()) {
+        return;
+      }
+
+      final List<ParentVersionChange> committed = new ArrayList<>(versions.size());
+      versions.forEach((id, version) -> committed.add(
+          new ParentVersionChange(bus.getNodeId(), id, version, deleted.contains(id))));
+      bus.publish(committed);
+    }
+  }
+}
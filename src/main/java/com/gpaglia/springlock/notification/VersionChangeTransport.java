@@ -0,0 +1,35 @@
+package com.gpaglia.springlock.notification;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries the {@link ParentVersionChange}s between the nodes. An implementation
+ * registered as a bean replaces the one selected by {@code springlock.notification.transport}.
+ *
+ * <p>{@link #send} is called after commit on the committing thread, and should not block
+ * for long; the changes of other nodes are delivered to the receiver in the order they
+ * were sent by each node.
+ */
+public interface VersionChangeTransport extends AutoCloseable {
+
+  /**
+   * Start delivering the changes sent by the other nodes.
+   *
+   * @param receiver the receiver of the changes
+   */
+  void start(Consumer<ParentVersionChange> receiver);
+
+  /**
+   * Send the changes committed by a transaction of this node.
+   *
+   * @param changes the changes
+   */
+  void send(List<ParentVersionChange> changes);
+
+  /**
+   * Stop delivering and release the resources.
+   */
+  @Override
+  void close();
+}
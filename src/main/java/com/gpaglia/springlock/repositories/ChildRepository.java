@@ -1,9 +1,31 @@
 package com.gpaglia.springlock.repositories;
 
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.gpaglia.springlock.entities.Child;
 
 public interface ChildRepository extends JpaRepository<Child, Long>{
 
+  /**
+   * List the children of a parent with their grandchild count, in id order, without
+   * loading any entity nor taking any lock.
+   * 
+   * @param parentId the parent id
+   * @return the child summaries
+   */
+  @Transactional(readOnly = true)
+  @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+  @Query("select c.id as id, c.name as name, c.version as version, c.parent.id as parentId, "
+      + "count(g) as grandChildCount "
+      + "from Child c left join c.grandChildren g where c.parent.id = ?1 "
+      + "group by c.id, c.name, c.version, c.parent.id order by c.id")
+  List<ChildSummary> findSummariesByParentId(Long parentId);
+
 }
@@ -0,0 +1,43 @@
+package com.gpaglia.springlock.repositories;
+
+/**
+ * Read only view of a child with the number of its grandchildren, see
+ * {@link ChildRepository#findSummariesByParentId(Long)}.
+ */
+public interface ChildSummary {
+
+  /**
+   * Get the id.
+   *
+   * @return the id
+   */
+  Long getId();
+
+  /**
+   * Get the name.
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Get the version, as of the query.
+   *
+   * @return the version
+   */
+  Long getVersion();
+
+  /**
+   * Get the parent id.
+   *
+   * @return the parent id
+   */
+  Long getParentId();
+
+  /**
+   * Get the number of grandchildren.
+   *
+   * @return the grandchild count
+   */
+  long getGrandChildCount();
+}
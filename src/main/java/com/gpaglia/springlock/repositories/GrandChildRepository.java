@@ -1,9 +1,29 @@
 package com.gpaglia.springlock.repositories;
 
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.gpaglia.springlock.entities.GrandChild;
 
 public interface GrandChildRepository extends JpaRepository<GrandChild, Long>{
 
+  /**
+   * List the grandchildren of a child, in id order, without loading any entity nor
+   * taking any lock.
+   * 
+   * @param childId the child id
+   * @return the grandchild summaries
+   */
+  @Transactional(readOnly = true)
+  @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+  @Query("select g.id as id, g.name as name, g.version as version, g.child.id as childId "
+      + "from GrandChild g where g.child.id = ?1 order by g.id")
+  List<GrandChildSummary> findSummariesByChildId(Long childId);
+
 }
@@ -0,0 +1,35 @@
+package com.gpaglia.springlock.repositories;
+
+/**
+ * Read only view of a grandchild, see {@link GrandChildRepository#findSummariesByChildId(Long)}.
+ */
+public interface GrandChildSummary {
+
+  /**
+   * Get the id.
+   *
+   * @return the id
+   */
+  Long getId();
+
+  /**
+   * Get the name.
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Get the version, as of the query.
+   *
+   * @return the version
+   */
+  Long getVersion();
+
+  /**
+   * Get the child id.
+   *
+   * @return the child id
+   */
+  Long getChildId();
+}
@@ -0,0 +1,204 @@
+package com.gpaglia.springlock.repositories;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells which parent rows can be locked within a timeout, for the H2 versions which
+ * support neither {@code NOWAIT}, nor {@code SKIP LOCKED}, nor a lock timeout per
+ * statement: their row locks wait up to the {@code LOCK_TIMEOUT} the session had when
+ * its transaction started.
+ *
+ * <p>The rows are locked with {@code select ... for update} on a probing connection,
+ * after setting its lock timeout, then released. The probing connections are opened
+ * with the {@code spring.datasource.*} settings, outside of the pool: the callers hold a
+ * pooled connection already, a second one could wait for the pool to free one, and
+ * the pool would discard a connection on its first lock timeout. Each probe has one of
+ * its own, kept for the next probes once done, so that concurrent probes never wait
+ * for one another.
+ *
+ * <p>Within this JVM, the callers {@link #guard} the ids they probe and then lock, so
+ * that two of them do not both find a row free and then queue on it. The guards are
+ * per id: a caller waiting for a row only delays the callers of the same row.
+ */
+@Component
+class H2RowLockProbe {
+
+  /** H2 error code of a lock timeout. */
+  static final int LOCK_TIMEOUT = 50200;
+
+  private final DataSourceProperties properties;
+  private final SQLExceptionTranslator translator = new SQLErrorCodeSQLExceptionTranslator("H2");
+
+  /** The probing connections not in use. */
+  private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+
+  /** The guards of the ids being probed and locked, with the number of their users. */
+  private final Map<Long, Guard> guards = new ConcurrentHashMap<>();
+
+  /**
+   * The guard of an id, dropped once unused.
+   */
+  private static final class Guard {
+    final ReentrantLock lock = new ReentrantLock();
+    int users;
+  }
+
+  @Autowired
+  H2RowLockProbe(DataSourceProperties properties) {
+    this.properties = properties;
+  }
+
+  /**
+   * Guard an id within this JVM, until {@link #release released}, waiting at most the
+   * timeout for the caller guarding it, if any. Reentrant.
+   *
+   * @param id the parent id
+   * @param timeoutNanos the max wait, zero or less to fail right away
+   * @return false if another caller still guards it
+   */
+  boolean guard(Long id, long timeoutNanos) {
+    final Guard g = guards.compute(id, (k, v) -> {
+      final Guard guard = v != null ? v : new Guard();
+      guard.users++;
+      return guard;
+    });
+
+    boolean acquired = false;
+    try {
+      acquired = timeoutNanos > 0
+          ? g.lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)
+          : g.lock.tryLock();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (!acquired) {
+        unuse(id);
+      }
+    }
+    return acquired;
+  }
+
+  /**
+   * Release an id guarded by the current thread.
+   *
+   * @param id the parent id
+   */
+  void release(Long id) {
+    guards.get(id).lock.unlock();
+    unuse(id);
+  }
+
+  private void unuse(Long id) {
+    guards.computeIfPresent(id, (k, g) -> --g.users == 0 ? null : g);
+  }
+
+  /**
+   * Find the parents that can be locked within the timeout, in the given order.
+   *
+   * @param ids the candidate parent ids
+   * @param timeout the lock timeout per row, at least 1 ms
+   * @param max the max number of ids returned
+   * @return the ids of the parents not locked by another transaction
+   * @throws org.springframework.dao.DataAccessException on any error other than a lock timeout
+   */
+  List<Long> lockable(List<Long> ids, Duration timeout, int max) {
+    final List<Long> free = new ArrayList<>();
+    if (ids.isEmpty() || max <= 0) {
+      return free;
+    }
+
+    try {
+      final Connection con = borrow();
+      try {
+        // set in its own transaction, so that it applies to the next one
+        con.setAutoCommit(true);
+        setLockTimeout(con, (int) Math.max(1, timeout.toMillis()));
+        con.setAutoCommit(false);
+
+        try (PreparedStatement ps = con.prepareStatement(
+            "select ID from PARENTS where ID = ? for update")) {
+          for (Long id : ids) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+              if (rs.next()) {
+                free.add(id);
+              }
+            } catch (SQLException e) {
+              // the failed statement is rolled back on its own
+              if (e.getErrorCode() != LOCK_TIMEOUT) {
+                throw e;
+              }
+            }
+            if (free.size() == max) {
+              break;
+            }
+          }
+        }
+        con.rollback();
+      } catch (SQLException e) {
+        // its state is unknown, not kept
+        closeQuietly(con);
+        throw e;
+      }
+      idle.push(con);
+    } catch (SQLException e) {
+      throw translator.translate("H2 row lock probe", null, e);
+    }
+    return free;
+  }
+
+  /**
+   * Close the probing connections not in use.
+   */
+  @PreDestroy
+  public void close() {
+    for (Connection con = idle.poll(); con != null; con = idle.poll()) {
+      closeQuietly(con);
+    }
+  }
+
+  private Connection borrow() throws SQLException {
+    final Connection con = idle.poll();
+    return con != null
+        ? con
+        : DriverManager.getConnection(
+            properties.determineUrl(),
+            properties.determineUsername(),
+            properties.determinePassword());
+  }
+
+  private static void closeQuietly(Connection con) {
+    try {
+      con.close();
+    } catch (SQLException e) {
+      // nothing left to release
+    }
+  }
+
+  private static void setLockTimeout(Connection con, int millis) throws SQLException {
+    try (Statement st = con.createStatement()) {
+      st.execute("SET LOCK_TIMEOUT " + millis);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.gpaglia.springlock.repositories;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import javax.persistence.LockModeType;
+
+/**
+ * Marks a custom repository method which takes the given lock, so that it is timed
+ * as a lock finder by the persistence metrics.
+ *
+ * <p>Spring Data only applies {@code @Lock} to its query methods: on the methods of
+ * a custom fragment it would have no effect, and the lock is taken by their
+ * implementation.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface LockFinder {
+
+  /**
+   * Get the lock mode taken.
+   *
+   * @return the lock mode
+   */
+  LockModeType value();
+}
@@ -0,0 +1,39 @@
+package com.gpaglia.springlock.repositories;
+
+import javax.persistence.LockModeType;
+
+/**
+ * The lock taken on a parent by {@link ParentRepositoryCustom#findByIdForUpdate}.
+ */
+public enum LockStrategy {
+
+  /** No lock, as {@code findById}. */
+  NONE(LockModeType.NONE),
+
+  /** The version is checked at commit, the transaction fails if it changed meanwhile. */
+  OPTIMISTIC(LockModeType.OPTIMISTIC),
+
+  /** The version is incremented at commit, so that concurrent writers of the aggregate conflict. */
+  OPTIMISTIC_FORCE_INCREMENT(LockModeType.OPTIMISTIC_FORCE_INCREMENT),
+
+  /** The row is locked with {@code select ... for update} until the end of the transaction. */
+  PESSIMISTIC_WRITE(LockModeType.PESSIMISTIC_WRITE),
+
+  /** The row is locked and its version incremented right away. */
+  PESSIMISTIC_FORCE_INCREMENT(LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+
+  private final LockModeType lockMode;
+
+  LockStrategy(LockModeType lockMode) {
+    this.lockMode = lockMode;
+  }
+
+  /**
+   * Get the lock mode.
+   *
+   * @return the jpa lock mode
+   */
+  public LockModeType getLockMode() {
+    return lockMode;
+  }
+}
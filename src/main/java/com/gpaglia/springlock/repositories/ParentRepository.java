@@ -2,21 +2,33 @@ package com.gpaglia.springlock.repositories;
 
 import com.gpaglia.springlock.entities.Parent;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
+
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * ParentRepository.
+ * 
+ * <p>The inherited {@code findById} takes no lock: a parent to be locked is loaded by
+ * {@link #findByIdForUpdate}, or by the {@code @Lock} finders below.
  */
-public interface ParentRepository extends JpaRepository<Parent, Long> {
+public interface ParentRepository extends JpaRepository<Parent, Long>, ParentRepositoryCustom {
 
-  @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
-  Optional<Parent> findById(Long id);
+  /** Select of the {@link ParentSummary} projections. */
+  String SUMMARY_SELECT = "select p.id as id, p.name as name, p.version as version, "
+      + "count(c) as childCount from Parent p left join p.children c ";
 
   @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
   @Query("select p from Parent p where p.id = ?1")
@@ -25,5 +37,65 @@ public interface ParentRepository extends JpaRepository<Parent, Long> {
   @Lock(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
   @Query("select p from Parent p where p.id = ?1")
   Optional<Parent> pessimisticFindById(Long id);
+
+  /**
+   * Load a parent with its children in one query; the grandchildren of all the
+   * children are then loaded by one subselect on first access.
+   * 
+   * @param id the parent id
+   * @return the parent
+   */
+  @EntityGraph(attributePaths = "children")
+  @Query("select p from Parent p where p.id = ?1")
+  Optional<Parent> findAggregateById(Long id);
+
+  /**
+   * Load many parents with their children in one query; the grandchildren of all the
+   * children are then loaded by one subselect on first access.
+   * 
+   * @param ids the parent ids
+   * @return the parents, by id
+   */
+  @EntityGraph(attributePaths = "children")
+  @Query("select distinct p from Parent p where p.id in ?1 order by p.id")
+  List<Parent> findAggregatesByIdIn(Collection<Long> ids);
+
+  /**
+   * Stream all the parents in id order over a cursor, read only and bypassing the
+   * second level cache, e.g. for an export. Must be called in a transaction and the
+   * stream closed after use; the parents stay managed until the persistence context
+   * is cleared, which is up to the caller.
+   * 
+   * @return the parents, by id
+   */
+  @QueryHints({
+      @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+      @QueryHint(name = "org.hibernate.readOnly", value = "true"),
+      @QueryHint(name = "org.hibernate.cacheMode", value = "IGNORE")
+  })
+  @Query("select p from Parent p order by p.id")
+  Stream<Parent> streamAllOrderById();
+
+  /**
+   * List all the parents with their child count, in id order, e.g. for a dashboard.
+   * Only the selected columns are read: no entity is loaded nor locked.
+   * 
+   * @return the parent summaries
+   */
+  @Transactional(readOnly = true)
+  @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+  @Query(SUMMARY_SELECT + "group by p.id, p.name, p.version order by p.id")
+  List<ParentSummary> findAllSummaries();
+
+  /**
+   * Get a parent with its child count, without loading nor locking it.
+   * 
+   * @param id the parent id
+   * @return the parent summary
+   */
+  @Transactional(readOnly = true)
+  @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+  @Query(SUMMARY_SELECT + "where p.id = ?1 group by p.id, p.name, p.version")
+  Optional<ParentSummary> findSummaryById(Long id);
   
 }
\ No newline at end of file
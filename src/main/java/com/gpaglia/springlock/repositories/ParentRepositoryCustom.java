@@ -0,0 +1,155 @@
+package com.gpaglia.springlock.repositories;
+
+import com.gpaglia.springlock.entities.Parent;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * ParentRepositoryCustom.
+ */
+public interface ParentRepositoryCustom {
+
+  /**
+   * Find a parent by id, locking it with the given strategy in the current transaction.
+   * 
+   * <p>A parent already managed by the persistence context is locked in place, e.g.
+   * OPTIMISTIC_FORCE_INCREMENT on a parent loaded by {@code findById}.
+   * 
+   * @param id the parent id
+   * @param strategy the lock to take
+   * @return the parent, empty if not found
+   * @throws org.springframework.dao.PessimisticLockingFailureException if a pessimistic
+   *     lock cannot be taken
+   */
+  @Transactional
+  Optional<Parent> findByIdForUpdate(Long id, LockStrategy strategy);
+
+  /**
+   * Find a parent by id with PESSIMISTIC_FORCE_INCREMENT, as
+   * {@link ParentRepository#pessimisticFindById(Long)}, waiting at most the given
+   * timeout for the row lock instead of {@code springlock.lock.timeout-ms}.
+   * 
+   * <p>The timeout is passed to the dialects which support it; on H2, the row is first
+   * probed on another connection with that lock timeout. The callers of this JVM on the
+   * same row take turns, waiting for one another within their timeout, while those on
+   * other rows go on; a transaction locking the row otherwise may still take it between
+   * the probe and the lock, the wait is then bounded by the default timeout.
+   * 
+   * @param id the parent id
+   * @param timeout the lock timeout, zero for NOWAIT
+   * @return the parent, empty if not found
+   * @throws CannotAcquireLockException if the row is locked by another transaction
+   *     for longer than the timeout; the current transaction can go on
+   */
+  @Transactional(noRollbackFor = CannotAcquireLockException.class)
+  @LockFinder(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+  Optional<Parent> pessimisticFindById(Long id, Duration timeout);
+
+  /**
+   * Find a parent by id with PESSIMISTIC_FORCE_INCREMENT, failing right away if
+   * another transaction holds its row lock.
+   * 
+   * @param id the parent id
+   * @return the parent, empty if not found
+   * @throws CannotAcquireLockException if the row is locked by another transaction;
+   *     the current transaction can go on
+   */
+  @Transactional(noRollbackFor = CannotAcquireLockException.class)
+  @LockFinder(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+  Optional<Parent> pessimisticFindByIdNowait(Long id);
+
+  /**
+   * Find many parents by id with PESSIMISTIC_FORCE_INCREMENT, locking their rows in
+   * ascending id order with one {@code select ... where ID in (...) order by ID for update}
+   * per 500 ids: transactions locking overlapping
+   * sets of parents this way wait for one another but never deadlock, whatever the
+   * order of the ids they are given.
+   * 
+   * <p>The row locks wait up to {@code springlock.lock.timeout-ms} each.
+   * 
+   * @param ids the parent ids, in any order, duplicates ignored
+   * @return the parents, by id
+   * @throws org.springframework.orm.ObjectRetrievalFailureException if any parent does not
+   *     exist, with the missing ids
+   * @throws org.springframework.dao.PessimisticLockingFailureException if a row lock times
+   *     out, the rows before it being locked already
+   */
+  @Transactional
+  @LockFinder(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+  List<Parent> pessimisticFindAllById(Collection<Long> ids);
+
+  /**
+   * Find many parents by id with PESSIMISTIC_FORCE_INCREMENT, locking their rows in
+   * ascending id order as {@link #pessimisticFindAllById(Collection)}, waiting at most
+   * the given timeout for each row lock.
+   * 
+   * <p>The timeout is passed to the dialects which support it. On H2, all the rows are
+   * first probed on another connection with that lock timeout, and none is locked if
+   * any is held by another transaction. The callers of this JVM on the same rows take
+   * turns, as for {@link #pessimisticFindById(Long, Duration)}; a transaction locking a
+   * row otherwise between the probe and the lock makes the wait bounded by the default
+   * timeout.
+   * 
+   * @param ids the parent ids, in any order, duplicates ignored
+   * @param timeout the lock timeout per row, zero for NOWAIT
+   * @return the parents, by id
+   * @throws CannotAcquireLockException if rows are locked by another transaction for
+   *     longer than the timeout, found by the probe: no row was locked, the current
+   *     transaction can go on
+   * @throws org.springframework.orm.ObjectRetrievalFailureException if any parent does not
+   *     exist, with the missing ids
+   * @throws org.springframework.dao.PessimisticLockingFailureException if a row lock times
+   *     out, the rows before it being locked already
+   */
+  @Transactional(noRollbackFor = CannotAcquireLockException.class)
+  @LockFinder(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+  List<Parent> pessimisticFindAllById(Collection<Long> ids, Duration timeout);
+
+  /**
+   * Lock with PESSIMISTIC_WRITE the first parents, in id order, whose rows are not
+   * locked by another transaction, skipping the locked ones, e.g. for workers sharing
+   * the parents as a queue.
+   * 
+   * <p>Uses {@code SKIP LOCKED} on the dialects which support it. On H2 it is emulated:
+   * the candidate rows are probed on another connection with a minimal lock timeout,
+   * then the free ones locked in the current transaction. A row picked by a worker of
+   * this JVM is skipped by the others until locked, so that two workers never pick the
+   * same row; a transaction locking the rows otherwise may still take one in between.
+   * 
+   * @param n the max number of parents
+   * @return the locked parents, by id, at most n
+   */
+  @Transactional
+  @LockFinder(LockModeType.PESSIMISTIC_WRITE)
+  List<Parent> findNextUnlockedParents(int n);
+
+  /**
+   * Force increment the version of many parents with bulk updates, checking that
+   * each of them still has the expected version, in the current transaction.
+   * 
+   * <p>Parents managed by the current persistence context get their version
+   * aligned, as if they had been locked with OPTIMISTIC_FORCE_INCREMENT and committed.
+   * All the new versions are notified on commit, with {@code springlock.notification}.
+   * 
+   * @param expectedVersions the expected versions by parent id
+   * @return the number of parents incremented
+   * @throws ObjectOptimisticLockingFailureException if any parent is missing or has
+   *     a different version; the whole transaction is then rolled back
+   * @throws org.springframework.dao.InvalidDataAccessApiUsageException if any id or
+   *     expected version is null, before any update, translated by the repository
+   *     from an {@link IllegalArgumentException}
+   */
+  @Transactional
+  int forceIncrementVersions(Map<Long, Long> expectedVersions);
+  
+}
@@ -0,0 +1,411 @@
+package com.gpaglia.springlock.repositories;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.notification.ParentVersionTracker;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PessimisticLockException;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.LockOptions;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+
+/**
+ * ParentRepositoryImpl, the custom part of the {@link ParentRepository}.
+ */
+public class ParentRepositoryImpl implements ParentRepositoryCustom {
+
+  /** Max parents per bulk statement, to keep the parameter count bounded. */
+  static final int BULK_CHUNK = 500;
+
+  /** Parent ids read per round by the SKIP LOCKED emulation. */
+  static final int PROBE_PAGE = 50;
+
+  /** The jpa lock timeout hint, in ms. */
+  static final String LOCK_TIMEOUT_HINT = "javax.persistence.lock.timeout";
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private final H2RowLockProbe probe;
+  private final boolean emulateLockTimeouts;
+
+  @Autowired
+  public ParentRepositoryImpl(EntityManagerFactory emf, H2RowLockProbe probe) {
+    this.probe = probe;
+    this.emulateLockTimeouts = emf.unwrap(SessionFactoryImplementor.class)
+        .getJdbcServices()
+        .getDialect() instanceof H2Dialect;
+  }
+
+  @Override
+  public Optional<Parent> findByIdForUpdate(Long id, LockStrategy strategy) {
+    return Optional.ofNullable(em.find(Parent.class, id, strategy.getLockMode()));
+  }
+
+  @Override
+  public Optional<Parent> pessimisticFindById(Long id, Duration timeout) {
+    final LockModeType mode = LockModeType.PESSIMISTIC_FORCE_INCREMENT;
+    final long millis = Math.max(0, timeout.toMillis());
+
+    if (!emulateLockTimeouts) {
+      return Optional.ofNullable(
+          em.find(Parent.class, id, mode, Collections.singletonMap(LOCK_TIMEOUT_HINT, millis)));
+    }
+
+    if (lockedHere(id)) {
+      return Optional.ofNullable(em.find(Parent.class, id, mode));
+    }
+
+    // a caller of this JVM probing or locking the row first is waited for as a lock
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    if (!probe.guard(id, TimeUnit.MILLISECONDS.toNanos(millis))) {
+      if (exists(id)) {
+        throw new CannotAcquireLockException(
+            "Parent " + id + " is locked by another transaction after " + millis + " ms");
+      }
+      return Optional.empty();
+    }
+    try {
+      final Duration left = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+      if (probe.lockable(Collections.singletonList(id), left, 1).isEmpty() && exists(id)) {
+        throw new CannotAcquireLockException(
+            "Parent " + id + " is locked by another transaction after " + millis + " ms");
+      }
+      return Optional.ofNullable(em.find(Parent.class, id, mode));
+    } finally {
+      probe.release(id);
+    }
+  }
+
+  @Override
+  public Optional<Parent> pessimisticFindByIdNowait(Long id) {
+    return pessimisticFindById(id, Duration.ZERO);
+  }
+
+  @Override
+  public List<Parent> pessimisticFindAllById(Collection<Long> ids) {
+    return lockInIdOrder(new ArrayList<>(new TreeSet<>(ids)), null);
+  }
+
+  @Override
+  public List<Parent> pessimisticFindAllById(Collection<Long> ids, Duration timeout) {
+    final List<Long> sorted = new ArrayList<>(new TreeSet<>(ids));
+    final long millis = Math.max(0, timeout.toMillis());
+
+    if (!emulateLockTimeouts) {
+      return lockInIdOrder(sorted, millis);
+    }
+
+    final List<Long> probed = sorted.stream()
+        .filter(id -> !lockedHere(id))
+        .collect(Collectors.toList());
+
+    // guarded in id order, as the rows are locked, so that no two callers wait for
+    // each other's guards
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    final List<Long> guarded = new ArrayList<>(probed.size());
+    try {
+      for (Long id : probed) {
+        if (!probe.guard(id, deadline - System.nanoTime())) {
+          if (exists(id)) {
+            throw new CannotAcquireLockException(
+                "Parent " + id + " is locked by another transaction after " + millis + " ms");
+          }
+          // missing, reported by the lock
+          continue;
+        }
+        guarded.add(id);
+      }
+
+      final Duration left = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+      final List<Long> locked = new ArrayList<>(guarded);
+      locked.removeAll(probe.lockable(guarded, left, guarded.size()));
+      if (!locked.isEmpty()) {
+        // those not found by the probe are missing, or locked
+        locked.retainAll(existing(locked));
+        if (!locked.isEmpty()) {
+          throw new CannotAcquireLockException(
+              "Parents " + locked + " are locked by another transaction after " + millis + " ms");
+        }
+      }
+      return lockInIdOrder(sorted, null);
+    } finally {
+      guarded.forEach(probe::release);
+    }
+  }
+
+  /**
+   * Lock the parents in the order of their ids, which must be sorted and distinct.
+   */
+  private List<Parent> lockInIdOrder(List<Long> ids, Long timeoutMillis) {
+    final List<Parent> parents = new ArrayList<>(ids.size());
+    final Set<Parent> managed = managedNotIncremented(ids);
+    try {
+      for (int from = 0; from < ids.size(); from += BULK_CHUNK) {
+        TypedQuery<Parent> q = em
+            .createQuery("select p from Parent p where p.id in :ids order by p.id", Parent.class)
+            .setParameter("ids", ids.subList(from, Math.min(from + BULK_CHUNK, ids.size())))
+            .setLockMode(LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        if (timeoutMillis != null) {
+          q.setHint(LOCK_TIMEOUT_HINT, timeoutMillis);
+        }
+        parents.addAll(q.getResultList());
+      }
+    } catch (PessimisticLockException | LockTimeoutException e) {
+      // not a CannotAcquireLockException, so that the transaction rolls back
+      throw new PessimisticLockingFailureException(
+          "Parents " + ids + " partially locked, a row lock timed out", e);
+    }
+
+    if (parents.size() < ids.size()) {
+      final List<Long> missing = new ArrayList<>(ids);
+      missing.removeAll(parents.stream().map(Parent::getId).collect(Collectors.toSet()));
+      throw new ObjectRetrievalFailureException(Parent.class, missing);
+    }
+
+    // the query only locks the rows of the parents managed already
+    if (!managed.isEmpty()) {
+      final SessionImplementor session = em.unwrap(SessionImplementor.class);
+      final EntityPersister persister = session.getFactory()
+          .getMetamodel()
+          .entityPersister(Parent.class);
+      for (Parent p : managed) {
+        final EntityEntry entry = session.getPersistenceContext().getEntry(p);
+        entry.forceLocked(p,
+            persister.forceVersionIncrement(p.getId(), entry.getVersion(), session));
+      }
+    }
+    return parents;
+  }
+
+  /**
+   * The parents managed by the persistence context and not yet incremented by a
+   * PESSIMISTIC_FORCE_INCREMENT lock.
+   */
+  private Set<Parent> managedNotIncremented(List<Long> ids) {
+    final SessionImplementor session = em.unwrap(SessionImplementor.class);
+    final EntityPersister persister = session.getFactory()
+        .getMetamodel()
+        .entityPersister(Parent.class);
+    final Set<Parent> managed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    for (Long id : ids) {
+      final Object entity = session.getPersistenceContext()
+          .getEntity(session.generateEntityKey(id, persister));
+      if (entity != null && em.getLockMode(entity) != LockModeType.PESSIMISTIC_FORCE_INCREMENT) {
+        managed.add((Parent) entity);
+      }
+    }
+    return managed;
+  }
+
+  private List<Long> existing(List<Long> ids) {
+    return em.createQuery("select p.id from Parent p where p.id in :ids", Long.class)
+        .setParameter("ids", ids)
+        .getResultList();
+  }
+
+  @Override
+  public List<Parent> findNextUnlockedParents(int n) {
+    if (n <= 0) {
+      return Collections.emptyList();
+    }
+
+    if (!emulateLockTimeouts) {
+      return em.createQuery("select p from Parent p order by p.id", Parent.class)
+          .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+          .setHint(LOCK_TIMEOUT_HINT, LockOptions.SKIP_LOCKED)
+          .setMaxResults(n)
+          .getResultList();
+    }
+
+    // the free rows stay guarded until locked, so that no other worker of this JVM
+    // picks them; those guarded by another caller are skipped as locked
+    final List<Long> free = new ArrayList<>(n);
+    try {
+      Long after = Long.MIN_VALUE;
+      while (free.size() < n) {
+        List<Long> candidates = em
+            .createQuery("select p.id from Parent p where p.id > :after order by p.id", Long.class)
+            .setParameter("after", after)
+            .setMaxResults(Math.max(n, PROBE_PAGE))
+            .getResultList();
+        if (candidates.isEmpty()) {
+          break;
+        }
+        after = candidates.get(candidates.size() - 1);
+
+        final List<Long> guarded = candidates.stream()
+            .filter(id -> probe.guard(id, 0))
+            .collect(Collectors.toList());
+        final List<Long> lockable = probe.lockable(guarded, Duration.ofMillis(1), n - free.size());
+        guarded.stream().filter(id -> !lockable.contains(id)).forEach(probe::release);
+        free.addAll(lockable);
+      }
+
+      if (free.isEmpty()) {
+        return Collections.emptyList();
+      }
+      return em.createQuery("select p from Parent p where p.id in :ids order by p.id", Parent.class)
+          .setParameter("ids", free)
+          .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+          .getResultList();
+    } finally {
+      free.forEach(probe::release);
+    }
+  }
+
+  /**
+   * Whether the parent is already locked pessimistically by the current transaction,
+   * which the probe would take for a lock of another one.
+   */
+  private boolean lockedHere(Long id) {
+    final SessionImplementor session = em.unwrap(SessionImplementor.class);
+    final EntityPersister persister = session.getFactory()
+        .getMetamodel()
+        .entityPersister(Parent.class);
+    final Object entity = session.getPersistenceContext()
+        .getEntity(session.generateEntityKey(id, persister));
+
+    if (entity == null) {
+      return false;
+    }
+    LockModeType mode = em.getLockMode(entity);
+    return mode == LockModeType.PESSIMISTIC_READ
+        || mode == LockModeType.PESSIMISTIC_WRITE
+        || mode == LockModeType.PESSIMISTIC_FORCE_INCREMENT;
+  }
+
+  private boolean exists(Long id) {
+    return em.createQuery("select count(p) from Parent p where p.id = :id", Long.class)
+        .setParameter("id", id)
+        .getSingleResult() > 0;
+  }
+
+  @Override
+  public int forceIncrementVersions(Map<Long, Long> expectedVersions) {
+    final List<Map.Entry<Long, Long>> entries = new ArrayList<>(expectedVersions.entrySet());
+    for (Map.Entry<Long, Long> e : entries) {
+      if (e.getKey() == null || e.getValue() == null) {
+        throw new IllegalArgumentException(
+            "Null parent id or expected version: " + e.getKey() + "=" + e.getValue());
+      }
+    }
+    final List<Long> shortChunkIds = new ArrayList<>();
+
+    for (int from = 0; from < entries.size(); from += BULK_CHUNK) {
+      List<Map.Entry<Long, Long>> chunk =
+          entries.subList(from, Math.min(from + BULK_CHUNK, entries.size()));
+      if (incrementChunk(chunk) != chunk.size()) {
+        chunk.forEach(e -> shortChunkIds.add(e.getKey()));
+      }
+    }
+
+    if (!shortChunkIds.isEmpty()) {
+      throw new ObjectOptimisticLockingFailureException(
+          Parent.class, staleIds(shortChunkIds, expectedVersions));
+    }
+
+    alignManagedVersions(expectedVersions);
+    ParentVersionTracker.bulkUpdated(em.unwrap(EventSource.class), expectedVersions.entrySet()
+        .stream()
+        .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue() + 1)));
+    return entries.size();
+  }
+
+  private int incrementChunk(List<Map.Entry<Long, Long>> chunk) {
+    final String tuples = chunk.stream()
+        .map(e -> "(?, ?)")
+        .collect(Collectors.joining(", "));
+
+    Query q = em.createNativeQuery(
+        "update PARENTS set VERSION = VERSION + 1 where (ID, VERSION) in (" + tuples + ")");
+    q.unwrap(NativeQuery.class).addSynchronizedEntityClass(Parent.class);
+
+    int pos = 1;
+    for (Map.Entry<Long, Long> e : chunk) {
+      q.setParameter(pos++, e.getKey());
+      q.setParameter(pos++, e.getValue());
+    }
+    return q.executeUpdate();
+  }
+
+  /**
+   * Find the parents of the failed chunks which are missing or do not have the
+   * expected version, only used to report a failure. A parent incremented by a
+   * concurrent writer to the same version this update would have given it cannot
+   * be told apart, so the whole chunks are reported when nothing else is found.
+   */
+  private List<Long> staleIds(List<Long> ids, Map<Long, Long> expectedVersions) {
+    final List<Long> stale = new ArrayList<>();
+
+    for (int from = 0; from < ids.size(); from += BULK_CHUNK) {
+      List<Long> chunk = ids.subList(from, Math.min(from + BULK_CHUNK, ids.size()));
+      Map<Long, Long> actual = em
+          .createQuery("select p.id, p.version from Parent p where p.id in :ids", Object[].class)
+          .setParameter("ids", chunk)
+          .getResultList()
+          .stream()
+          .collect(Collectors.toMap(r -> (Long) r[0], r -> (Long) r[1]));
+
+      for (Long id : chunk) {
+        // the incremented ones are expected + 1 now
+        Long v = actual.get(id);
+        if (v == null || v != expectedVersions.get(id) + 1) {
+          stale.add(id);
+        }
+      }
+    }
+    return stale.isEmpty() ? ids : stale;
+  }
+
+  /**
+   * Align the version of the parents managed by the persistence context with the
+   * bulk increment, so that later flushes do not fail on their stale version.
+   */
+  private void alignManagedVersions(Map<Long, Long> expectedVersions) {
+    final SessionImplementor session = em.unwrap(SessionImplementor.class);
+    final org.hibernate.engine.spi.PersistenceContext pc = session.getPersistenceContext();
+    final EntityPersister persister = session.getFactory()
+        .getMetamodel()
+        .entityPersister(Parent.class);
+
+    for (Map.Entry<Long, Long> e : expectedVersions.entrySet()) {
+      Object entity = pc.getEntity(session.generateEntityKey(e.getKey(), persister));
+      if (entity != null) {
+        EntityEntry entry = pc.getEntry(entity);
+        entry.forceLocked(entity, e.getValue() + 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.gpaglia.springlock.repositories;
+
+/**
+ * Read only view of a parent with the number of its children, see
+ * {@link ParentRepository#findAllSummaries()}.
+ */
+public interface ParentSummary {
+
+  /**
+   * Get the id.
+   *
+   * @return the id
+   */
+  Long getId();
+
+  /**
+   * Get the name.
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Get the version, as of the query.
+   *
+   * @return the version
+   */
+  Long getVersion();
+
+  /**
+   * Get the number of children.
+   *
+   * @return the child count
+   */
+  long getChildCount();
+}
@@ -0,0 +1,307 @@
+package com.gpaglia.springlock.snapshot;
+
+import com.gpaglia.springlock.notification.ParentVersionChangedEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * A read through cache of the parent aggregates, each one serialized with its children
+ * and grandchildren in the {@link SnapshotLayout} and kept off heap, enabled by
+ * {@code springlock.snapshot.enabled=true}. The aggregates are read as
+ * {@link ParentView}s, without any entity nor persistence context.
+ *
+ * <p>Each snapshot is tagged with the version of its parent: {@link #get(Long)} checks
+ * it against the database and reloads a snapshot whose parent version changed. Changes
+ * to children and grandchildren are seen when they increment the parent version, as
+ * the force increment finders do, or any change with
+ * {@code springlock.versioning.enabled=true}.
+ *
+ * <p>Snapshots are appended to direct buffers of {@code springlock.snapshot.segment-size}.
+ * When {@code springlock.snapshot.max-segments} are full, the oldest segment is dropped
+ * with its snapshots, which includes the space left by those reloaded since. An
+ * aggregate larger than a segment is loaded on each read.
+ */
+@Component
+@ConditionalOnProperty(prefix = "springlock.snapshot", name = "enabled", havingValue = "true")
+public class AggregateSnapshotCache {
+
+  /** Reads a parent with its children and grandchildren, in id order. */
+  static final String AGGREGATE_SQL = "select p.ID, p.VERSION, p.NAME,"
+      + " c.ID, c.VERSION, c.NAME, g.ID, g.VERSION, g.NAME"
+      + " from PARENTS p"
+      + " left join CHILDREN c on c.PARENT_ID = p.ID"
+      + " left join GRANDCHILDREN g on g.CHILD_ID = c.ID"
+      + " where p.ID = ? order by c.ID, g.ID";
+
+  static final String VERSION_SQL = "select VERSION from PARENTS where ID = ?";
+
+  /** An off heap buffer, appended to. */
+  private static final class Segment {
+    final ByteBuffer buffer;
+    final ByteBuffer readOnly;
+    int used;
+
+    Segment(int size) {
+      this.buffer = ByteBuffer.allocateDirect(size);
+      this.readOnly = buffer.asReadOnlyBuffer();
+    }
+  }
+
+  /** Where a snapshot is. */
+  private static final class Slot {
+    final Segment segment;
+    final int offset;
+    final long version;
+
+    Slot(Segment segment, int offset, long version) {
+      this.segment = segment;
+      this.offset = offset;
+      this.version = version;
+    }
+  }
+
+  /** A row of an aggregate, in the heap until it is serialized. */
+  private static final class Node {
+    final long id;
+    final long version;
+    final String name;
+    final Map<Long, Node> children = new LinkedHashMap<>();
+
+    Node(long id, long version, String name) {
+      this.id = id;
+      this.version = version;
+      this.name = name;
+    }
+  }
+
+  private final JdbcTemplate jdbc;
+  private final int segmentSize;
+  private final int maxSegments;
+
+  private final Map<Long, Slot> index = new ConcurrentHashMap<>();
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private final ReentrantLock appendLock = new ReentrantLock();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter stale;
+
+  @Autowired
+  public AggregateSnapshotCache(
+      DataSource dataSource,
+      SnapshotProperties props,
+      ObjectProvider<MeterRegistry> registry
+  ) {
+    this.jdbc = new JdbcTemplate(dataSource);
+    this.segmentSize = (int) Math.min(Integer.MAX_VALUE, props.getSegmentSize().toBytes());
+    this.maxSegments = Math.max(1, props.getMaxSegments());
+
+    MeterRegistry reg = registry.getIfAvailable(() -> Metrics.globalRegistry);
+    this.hits = lookups(reg, "hit");
+    this.misses = lookups(reg, "miss");
+    this.stale = lookups(reg, "stale");
+    reg.gauge("springlock.snapshot.entries", index, Map::size);
+    reg.gauge("springlock.snapshot.bytes", this, AggregateSnapshotCache::allocatedBytes);
+  }
+
+  private static Counter lookups(MeterRegistry reg, String result) {
+    return Counter.builder("springlock.snapshot.lookups")
+        .description("Snapshot lookups by result")
+        .tag("result", result)
+        .register(reg);
+  }
+
+  /**
+   * Get the current snapshot of an aggregate: one query checks the parent version,
+   * another one reloads the aggregate if its snapshot is missing or stale.
+   *
+   * @param id the parent id
+   * @return the aggregate, empty if the parent does not exist
+   */
+  public Optional<ParentView> get(Long id) {
+    final List<Long> versions = jdbc.queryForList(VERSION_SQL, Long.class, id);
+    if (versions.isEmpty()) {
+      index.remove(id);
+      return Optional.empty();
+    }
+    return get(id, versions.get(0));
+  }
+
+  /**
+   * Get the snapshot of an aggregate at a version known to the caller, e.g. from a
+   * {@code ParentSummary}: no query if the snapshot is at that version.
+   *
+   * @param id the parent id
+   * @param version the parent version
+   * @return the aggregate as of that version or a later one, empty if the parent does
+   *     not exist
+   */
+  public Optional<ParentView> get(Long id, long version) {
+    final Slot slot = index.get(id);
+    if (slot != null && slot.version >= version) {
+      hits.increment();
+      return Optional.of(new ParentView(slot.segment.readOnly, slot.offset));
+    }
+    (slot == null ? misses : stale).increment();
+    return load(id);
+  }
+
+  /**
+   * Drop the snapshot of an aggregate.
+   *
+   * @param id the parent id
+   */
+  public void invalidate(Long id) {
+    index.remove(id);
+  }
+
+  /**
+   * Drop the snapshot of a parent changed by this node or another one, with
+   * {@code springlock.notification.enabled=true}: {@link #get(Long, long)} then reloads
+   * it with no need to check the version.
+   *
+   * @param event the change
+   */
+  @EventListener
+  public void onParentVersionChanged(ParentVersionChangedEvent event) {
+    final Slot slot = index.get(event.getId());
+    if (slot != null && (event.isDeleted() || slot.version < event.getVersion())) {
+      index.remove(event.getId(), slot);
+    }
+  }
+
+  /**
+   * Drop all the snapshots and their segments.
+   */
+  public void clear() {
+    appendLock.lock();
+    try {
+      index.clear();
+      segments.clear();
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of cached snapshots.
+   *
+   * @return the snapshot count
+   */
+  public int size() {
+    return index.size();
+  }
+
+  /**
+   * Get the off heap memory allocated to the segments.
+   *
+   * @return the allocated bytes
+   */
+  public long allocatedBytes() {
+    appendLock.lock();
+    try {
+      return (long) segments.size() * segmentSize;
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  private Optional<ParentView> load(Long id) {
+    final Node parent = jdbc.query(AGGREGATE_SQL, AggregateSnapshotCache::toNodes, id);
+    if (parent == null) {
+      index.remove(id);
+      return Optional.empty();
+    }
+
+    final SnapshotLayout.Writer w = new SnapshotLayout.Writer();
+    w.node(parent.id, parent.version, parent.name).count(parent.children.size());
+    for (Node c : parent.children.values()) {
+      w.node(c.id, c.version, c.name).count(c.children.size());
+      for (Node gc : c.children.values()) {
+        w.node(gc.id, gc.version, gc.name);
+      }
+    }
+    final byte[] bytes = w.toByteArray();
+
+    if (bytes.length > segmentSize) {
+      // served, not cached
+      return Optional.of(new ParentView(ByteBuffer.wrap(bytes).asReadOnlyBuffer(), 0));
+    }
+    final Slot slot = append(id, parent.version, bytes);
+    return Optional.of(new ParentView(slot.segment.readOnly, slot.offset));
+  }
+
+  private static Node toNodes(ResultSet rs) throws SQLException {
+    Node parent = null;
+    while (rs.next()) {
+      if (parent == null) {
+        parent = new Node(rs.getLong(1), rs.getLong(2), rs.getString(3));
+      }
+      final long childId = rs.getLong(4);
+      if (rs.wasNull()) {
+        continue;
+      }
+      Node child = parent.children.get(childId);
+      if (child == null) {
+        child = new Node(childId, rs.getLong(5), rs.getString(6));
+        parent.children.put(childId, child);
+      }
+      final long grandChildId = rs.getLong(7);
+      if (!rs.wasNull()) {
+        child.children.put(grandChildId, new Node(grandChildId, rs.getLong(8), rs.getString(9)));
+      }
+    }
+    return parent;
+  }
+
+  private Slot append(Long id, long version, byte[] bytes) {
+    appendLock.lock();
+    try {
+      Segment segment = segments.peekLast();
+      if (segment == null || segmentSize - segment.used < bytes.length) {
+        segment = new Segment(segmentSize);
+        segments.addLast(segment);
+        if (segments.size() > maxSegments) {
+          final Segment oldest = segments.removeFirst();
+          // its buffer is freed once the views still reading it are gone
+          index.values().removeIf(s -> s.segment == oldest);
+        }
+      }
+
+      final ByteBuffer dst = segment.buffer.duplicate();
+      dst.position(segment.used);
+      dst.put(bytes);
+      final Slot slot = new Slot(segment, segment.used, version);
+      segment.used += bytes.length;
+
+      // a concurrent load may have cached a later version meanwhile
+      index.merge(id, slot, (old, neu) -> neu.version >= old.version ? neu : old);
+      return slot;
+    } finally {
+      appendLock.unlock();
+    }
+  }
+}
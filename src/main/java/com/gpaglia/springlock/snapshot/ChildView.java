@@ -0,0 +1,86 @@
+package com.gpaglia.springlock.snapshot;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A child with its grandchildren, as read from an aggregate snapshot.
+ */
+public final class ChildView {
+  private final ByteBuffer buf;
+  private final int offset;
+
+  ChildView(ByteBuffer buf, int offset) {
+    this.buf = buf;
+    this.offset = offset;
+  }
+
+  /**
+   * Get the id.
+   *
+   * @return the id
+   */
+  public long getId() {
+    return buf.getLong(offset + SnapshotLayout.ID);
+  }
+
+  /**
+   * Get the version.
+   *
+   * @return the version
+   */
+  public long getVersion() {
+    return buf.getLong(offset + SnapshotLayout.VERSION);
+  }
+
+  /**
+   * Get the name, decoded on each call.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return SnapshotLayout.name(buf, offset);
+  }
+
+  /**
+   * Get the number of grandchildren.
+   *
+   * @return the grandchild count
+   */
+  public int getGrandChildCount() {
+    return buf.getInt(SnapshotLayout.afterName(buf, offset));
+  }
+
+  /**
+   * Get the grandchildren, in id order.
+   *
+   * @return the grandchildren, read only
+   */
+  public List<GrandChildView> getGrandChildren() {
+    final int count = getGrandChildCount();
+    final List<GrandChildView> grandChildren = new ArrayList<>(count);
+    int at = SnapshotLayout.afterName(buf, offset) + 4;
+    for (int i = 0; i < count; i++) {
+      final GrandChildView gc = new GrandChildView(buf, at);
+      grandChildren.add(gc);
+      at = gc.end();
+    }
+    return Collections.unmodifiableList(grandChildren);
+  }
+
+  int end() {
+    final int count = getGrandChildCount();
+    int at = SnapshotLayout.afterName(buf, offset) + 4;
+    for (int i = 0; i < count; i++) {
+      at = SnapshotLayout.afterName(buf, at);
+    }
+    return at;
+  }
+
+  @Override
+  public String toString() {
+    return "ChildView [id=" + getId() + ", version=" + getVersion() + "]";
+  }
+}
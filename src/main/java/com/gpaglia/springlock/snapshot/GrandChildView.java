@@ -0,0 +1,52 @@
+package com.gpaglia.springlock.snapshot;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A grandchild, as read from an aggregate snapshot.
+ */
+public final class GrandChildView {
+  private final ByteBuffer buf;
+  private final int offset;
+
+  GrandChildView(ByteBuffer buf, int offset) {
+    this.buf = buf;
+    this.offset = offset;
+  }
+
+  /**
+   * Get the id.
+   *
+   * @return the id
+   */
+  public long getId() {
+    return buf.getLong(offset + SnapshotLayout.ID);
+  }
+
+  /**
+   * Get the version.
+   *
+   * @return the version
+   */
+  public long getVersion() {
+    return buf.getLong(offset + SnapshotLayout.VERSION);
+  }
+
+  /**
+   * Get the name, decoded on each call.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return SnapshotLayout.name(buf, offset);
+  }
+
+  int end() {
+    return SnapshotLayout.afterName(buf, offset);
+  }
+
+  @Override
+  public String toString() {
+    return "GrandChildView [id=" + getId() + ", version=" + getVersion() + "]";
+  }
+}
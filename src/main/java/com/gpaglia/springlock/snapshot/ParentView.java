@@ -0,0 +1,100 @@
+package com.gpaglia.springlock.snapshot;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parent with its children and grandchildren, as read from an aggregate snapshot:
+ * the values are read from the snapshot bytes on each call, no entity is created.
+ *
+ * <p>A view stays readable after its snapshot is invalidated or evicted, and then
+ * shows the aggregate as of {@link #getVersion()}.
+ */
+public final class ParentView {
+  private final ByteBuffer buf;
+  private final int offset;
+
+  ParentView(ByteBuffer buf, int offset) {
+    this.buf = buf;
+    this.offset = offset;
+  }
+
+  /**
+   * Get the id.
+   *
+   * @return the id
+   */
+  public long getId() {
+    return buf.getLong(offset + SnapshotLayout.ID);
+  }
+
+  /**
+   * Get the version.
+   *
+   * @return the version
+   */
+  public long getVersion() {
+    return buf.getLong(offset + SnapshotLayout.VERSION);
+  }
+
+  /**
+   * Get the name, decoded on each call.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return SnapshotLayout.name(buf, offset);
+  }
+
+  /**
+   * Get the number of children.
+   *
+   * @return the child count
+   */
+  public int getChildCount() {
+    return buf.getInt(SnapshotLayout.afterName(buf, offset));
+  }
+
+  /**
+   * Get the children, in id order.
+   *
+   * @return the children, read only
+   */
+  public List<ChildView> getChildren() {
+    final int count = getChildCount();
+    final List<ChildView> children = new ArrayList<>(count);
+    int at = SnapshotLayout.afterName(buf, offset) + 4;
+    for (int i = 0; i < count; i++) {
+      final ChildView c = new ChildView(buf, at);
+      children.add(c);
+      at = c.end();
+    }
+    return Collections.unmodifiableList(children);
+  }
+
+  /**
+   * Get a child by id.
+   *
+   * @param id the child id
+   * @return the child, or null if not a child of this parent
+   */
+  public ChildView getChild(long id) {
+    final int count = getChildCount();
+    int at = SnapshotLayout.afterName(buf, offset) + 4;
+    for (int i = 0; i < count; i++) {
+      final ChildView c = new ChildView(buf, at);
+      if (c.getId() == id) {
+        return c;
+      }
+      at = c.end();
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "ParentView [id=" + getId() + ", version=" + getVersion() + "]";
+  }
+}
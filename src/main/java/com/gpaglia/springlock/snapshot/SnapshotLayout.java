@@ -0,0 +1,91 @@
+package com.gpaglia.springlock.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary layout of an aggregate, big endian:
+ *
+ * <pre>
+ * parent:     id:long version:long name:string childCount:int child*
+ * child:      id:long version:long name:string grandChildCount:int grandChild*
+ * grandChild: id:long version:long name:string
+ * string:     length:unsigned short (0xFFFF for null) utf-8 bytes
+ * </pre>
+ */
+final class SnapshotLayout {
+
+  static final int ID = 0;
+  static final int VERSION = 8;
+  static final int NAME = 16;
+
+  private static final int NULL_LENGTH = 0xFFFF;
+
+  private SnapshotLayout() {
+  }
+
+  /**
+   * Get the offset following the name of the node at the given offset.
+   */
+  static int afterName(ByteBuffer buf, int offset) {
+    final int length = buf.getShort(offset + NAME) & 0xFFFF;
+    return offset + NAME + 2 + (length == NULL_LENGTH ? 0 : length);
+  }
+
+  static String name(ByteBuffer buf, int offset) {
+    final int length = buf.getShort(offset + NAME) & 0xFFFF;
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buf.get(offset + NAME + 2 + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes the nodes of an aggregate, in the order of the layout.
+   */
+  static final class Writer {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    Writer node(long id, long version, String name) {
+      try {
+        out.writeLong(id);
+        out.writeLong(version);
+        if (name == null) {
+          out.writeShort(NULL_LENGTH);
+        } else {
+          final byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+          if (utf8.length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("Name too long: " + utf8.length + " bytes");
+          }
+          out.writeShort(utf8.length);
+          out.write(utf8);
+        }
+        return this;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    Writer count(int count) {
+      try {
+        out.writeInt(count);
+        return this;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    byte[] toByteArray() {
+      return bytes.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.gpaglia.springlock.snapshot;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings of the {@link AggregateSnapshotCache}, bound to {@code springlock.snapshot.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.snapshot")
+public class SnapshotProperties {
+
+  /** Whether the snapshot cache is enabled. */
+  private boolean enabled = false;
+
+  /** Size of each off-heap segment, and so of the largest aggregate cached. */
+  private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+  /** Segments kept, the oldest one being dropped when another is needed. */
+  private int maxSegments = 8;
+
+  /**
+   * Get the enabled flag.
+   *
+   * @return the enabled flag
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Set the enabled flag.
+   *
+   * @param enabled the enabled flag to set
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Get the segment size.
+   *
+   * @return the segment size
+   */
+  public DataSize getSegmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * Set the segment size.
+   *
+   * @param segmentSize the segment size to set
+   */
+  public void setSegmentSize(DataSize segmentSize) {
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Get the max number of segments.
+   *
+   * @return the max segments
+   */
+  public int getMaxSegments() {
+    return maxSegments;
+  }
+
+  /**
+   * Set the max number of segments.
+   *
+   * @param maxSegments the max segments to set
+   */
+  public void setMaxSegments(int maxSegments) {
+    this.maxSegments = maxSegments;
+  }
+}
@@ -0,0 +1,163 @@
+package com.gpaglia.springlock.versioning;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.hibernate.LockModes;
+import com.gpaglia.springlock.hibernate.SessionState;
+
+import java.io.Serializable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.FlushEntityEvent;
+import org.hibernate.event.spi.FlushEntityEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+
+/**
+ * Increments the version of the {@link Parent} of the children and grandchildren
+ * changed in a transaction, so that the parent version guards its whole aggregate.
+ *
+ * <p>Runs after the default listener of each flushed entity, and notes the root of each
+ * updated or deleted child and grandchild. Before the transaction completes, each noted
+ * parent gets one version increment, as with {@code OPTIMISTIC_FORCE_INCREMENT}: the
+ * commit fails if the parent version changed since the parent was loaded. Parents
+ * already updated or force incremented in the same transaction are left alone, so
+ * that their version is incremented once. A parent not loaded yet is loaded at commit,
+ * its guard then starting there.
+ *
+ * <p>Children inserted or moved change the collection of their parents, whose version
+ * hibernate increments already.
+ */
+public class AggregateRootVersioning implements FlushEntityEventListener {
+  private static final long serialVersionUID = 1L;
+
+  /** The pending increments of each session, until its transaction completes. */
+  private final transient SessionState<RootIncrements> increments =
+      new SessionState<>(AggregateRootVersioning::register);
+
+  @Override
+  public void onFlushEntity(FlushEntityEvent event) {
+    final EntityEntry entry = event.getEntityEntry();
+    final Object entity = event.getEntity();
+    final boolean deleted = entry.getStatus() == Status.DELETED;
+    // enhanced entities report no dirty properties as an empty array
+    final int[] dirty = event.getDirtyProperties();
+    final boolean changed = deleted
+        || (dirty != null && dirty.length > 0)
+        || event.hasDirtyCollection();
+    if (!changed || entry.getStatus() == Status.READ_ONLY) {
+      return;
+    }
+
+    if (entity instanceof Parent) {
+      if (!deleted) {
+        // its own update increments the version
+        increments.of(event.getSession()).updated.add(entry.getId());
+      }
+    } else {
+      final Serializable rootId = rootId(entity, entry);
+      if (rootId != null) {
+        increments.of(event.getSession()).roots.add(rootId);
+      }
+    }
+  }
+
+  private static RootIncrements register(EventSource session) {
+    final RootIncrements ri = new RootIncrements();
+    session.getActionQueue().registerProcess(ri);
+    session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (ok, ss) -> {
+      if (ok) {
+        // drop any stale state put back by the readers in between
+        ri.incremented.forEach(id -> ss.getFactory().getCache()
+            .evictEntityData(Parent.class, id));
+      }
+    });
+    return ri;
+  }
+
+  /**
+   * The id of the parent of a child or grandchild, as of now or else as loaded, e.g.
+   * for the children removed from their parent.
+   */
+  private static Serializable rootId(Object entity, EntityEntry entry) {
+    if (entity instanceof Child) {
+      Serializable id = idOf(((Child) entity).getParent());
+      return id != null ? id : idOf(loadedValue(entry, "parent"));
+    }
+    if (entity instanceof GrandChild) {
+      Object child = ((GrandChild) entity).getChild();
+      if (child == null) {
+        child = loadedValue(entry, "child");
+      }
+      return child != null ? idOf(((Child) Hibernate.unproxy(child)).getParent()) : null;
+    }
+    return null;
+  }
+
+  private static Object loadedValue(EntityEntry entry, String property) {
+    final Object[] loaded = entry.getLoadedState();
+    if (loaded == null) {
+      return null;
+    }
+    return loaded[entry.getPersister().getEntityMetamodel().getPropertyIndex(property)];
+  }
+
+  private static Serializable idOf(Object parent) {
+    if (parent instanceof HibernateProxy) {
+      return ((HibernateProxy) parent).getHibernateLazyInitializer().getIdentifier();
+    }
+    return parent != null ? ((Parent) parent).getId() : null;
+  }
+
+  /**
+   * The parents to increment at the end of a transaction.
+   */
+  private static class RootIncrements implements BeforeTransactionCompletionProcess {
+
+    final Set<Serializable> roots = new LinkedHashSet<>();
+    final Set<Serializable> updated = new LinkedHashSet<>();
+    final Set<Serializable> incremented = new LinkedHashSet<>();
+
+    @Override
+    public void doBeforeTransactionCompletion(SessionImplementor session) {
+      final EntityPersister persister = session.getFactory()
+          .getMetamodel().entityPersister(Parent.class);
+      final PersistenceContext pc = session.getPersistenceContext();
+
+      for (Serializable id : roots) {
+        if (updated.contains(id)) {
+          continue;
+        }
+        Object parent = pc.getEntity(session.generateEntityKey(id, persister));
+        if (parent == null) {
+          parent = session.get(Parent.class, id);
+        }
+        // the context may hold a lazy proxy only, whose entry is the one of its target
+        parent = Hibernate.unproxy(parent);
+        final EntityEntry entry = parent != null ? pc.getEntry(parent) : null;
+        if (entry == null
+            || entry.getStatus() != Status.MANAGED
+            || LockModes.isForceIncrement(entry.getLockMode())) {
+          continue;
+        }
+
+        final Object next = persister.forceVersionIncrement(id, entry.getVersion(), session);
+        entry.forceLocked(parent, next);
+        incremented.add(id);
+        if (persister.canWriteToCache()) {
+          session.getFactory().getCache().evictEntityData(Parent.class, id);
+        }
+      }
+    }
+  }
+}
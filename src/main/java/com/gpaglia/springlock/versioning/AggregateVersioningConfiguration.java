@@ -0,0 +1,60 @@
+package com.gpaglia.springlock.versioning;
+
+import com.gpaglia.springlock.hibernate.AppendingIntegratorProvider;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Versioning of the aggregates by their root, enabled by
+ * {@code springlock.versioning.enabled=true}: a change to a child or grandchild
+ * increments the version of its parent, see {@link AggregateRootVersioning}.
+ *
+ * <p>One optimistic lock per aggregate then detects the concurrent changes to any of
+ * its entities, in place of pessimistic locks on the rows of the three tables.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "springlock.versioning", name = "enabled", havingValue = "true")
+public class AggregateVersioningConfiguration {
+
+  /**
+   * Register the {@link AggregateRootVersioning} listener.
+   *
+   * @return the customizer
+   */
+  @Bean
+  public HibernatePropertiesCustomizer aggregateVersioningCustomizer() {
+    return props -> AppendingIntegratorProvider.append(props, new AggregateVersioningIntegrator());
+  }
+
+  /**
+   * Appends the {@link AggregateRootVersioning} to the flush entity listeners, after
+   * the default one which finds the dirty entities.
+   */
+  static class AggregateVersioningIntegrator implements Integrator {
+
+    @Override
+    public void integrate(
+        Metadata metadata,
+        SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+      serviceRegistry.getService(EventListenerRegistry.class)
+          .appendListeners(EventType.FLUSH_ENTITY, new AggregateRootVersioning());
+    }
+
+    @Override
+    public void disintegrate(
+        SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+      // nothing to release
+    }
+  }
+}
@@ -0,0 +1,357 @@
+package com.gpaglia.springlock.writebehind;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Buffers the renames of children and grandchildren, and writes them periodically
+ * in one transaction, enabled by {@code springlock.write-behind.enabled=true}.
+ *
+ * <p>Renames of the same row are coalesced, the last one wins. Each row is updated
+ * with a jdbc batched {@code update ... where ID = ? and VERSION = ?} which increments
+ * its version, but neither loads the entities nor touches the version of their parent.
+ * A row changed or deleted since its expected version was read is not written, and a
+ * {@link WriteBehindConflictEvent} is published for it after the flush.
+ *
+ * <p>Flushes run every {@code springlock.write-behind.flush-interval}, or as soon as
+ * {@code springlock.write-behind.max-pending} rows are buffered. A flush failed by a
+ * transient error puts its renames back in the buffer, unless newer ones were buffered
+ * meanwhile; they are otherwise dropped and logged. The buffer is flushed once more
+ * when the application context is closed.
+ */
+@Component
+@ConditionalOnProperty(prefix = "springlock.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindBuffer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+  /** Attempts of the last flush at close, when failed by transient errors. */
+  static final int CLOSE_ATTEMPTS = 3;
+
+  private enum Target {
+    CHILDREN(Child.class, "CHILDREN"),
+    GRANDCHILDREN(GrandChild.class, "GRANDCHILDREN");
+
+    final Class<?> entityClass;
+    final String sql;
+
+    Target(Class<?> entityClass, String table) {
+      this.entityClass = entityClass;
+      this.sql = "update " + table + " set NAME = ?, VERSION = VERSION + 1"
+          + " where ID = ? and VERSION = ?";
+    }
+  }
+
+  /** A buffered rename, equal only to itself. */
+  private static final class Rename {
+    final Long id;
+    final long expectedVersion;
+    final String name;
+
+    Rename(Long id, long expectedVersion, String name) {
+      this.id = id;
+      this.expectedVersion = expectedVersion;
+      this.name = name;
+    }
+  }
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate txTemplate;
+  private final Cache cache;
+  private final ApplicationEventPublisher publisher;
+  private final WriteBehindProperties props;
+
+  private final Map<Target, Map<Long, Rename>> buffers = new EnumMap<>(Target.class);
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final ScheduledExecutorService scheduler;
+  private volatile boolean closed;
+
+  @Autowired
+  public WriteBehindBuffer(
+      DataSource dataSource,
+      PlatformTransactionManager txManager,
+      EntityManagerFactory emf,
+      ApplicationEventPublisher publisher,
+      WriteBehindProperties props
+  ) {
+    this.jdbc = new JdbcTemplate(dataSource);
+    this.txTemplate = new TransactionTemplate(txManager);
+    this.cache = emf.getCache();
+    this.publisher = publisher;
+    this.props = props;
+
+    for (Target t : Target.values()) {
+      buffers.put(t, new ConcurrentHashMap<>());
+    }
+
+    final long interval = props.getFlushInterval().toMillis();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "springlock-write-behind");
+      t.setDaemon(true);
+      return t;
+    });
+    this.scheduler.scheduleWithFixedDelay(this::scheduledFlush, interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Buffer the rename of a child.
+   *
+   * @param child the child, as read
+   * @param name the new name
+   * @throws IllegalArgumentException if the child was never persisted
+   * @throws IllegalStateException if the buffer is closed
+   */
+  public void rename(Child child, String name) {
+    renameChild(child.getId(), expectedVersion(child.getVersion()), name);
+  }
+
+  /**
+   * Buffer the rename of a grandchild.
+   *
+   * @param grandChild the grandchild, as read
+   * @param name the new name
+   * @throws IllegalArgumentException if the grandchild was never persisted
+   * @throws IllegalStateException if the buffer is closed
+   */
+  public void rename(GrandChild grandChild, String name) {
+    renameGrandChild(grandChild.getId(), expectedVersion(grandChild.getVersion()), name);
+  }
+
+  /**
+   * Buffer the rename of a child.
+   *
+   * @param id the child id
+   * @param expectedVersion the version the rename is based on
+   * @param name the new name
+   * @throws IllegalStateException if the buffer is closed
+   */
+  public void renameChild(Long id, long expectedVersion, String name) {
+    buffer(Target.CHILDREN, new Rename(id, expectedVersion, name));
+  }
+
+  /**
+   * Buffer the rename of a grandchild.
+   *
+   * @param id the grandchild id
+   * @param expectedVersion the version the rename is based on
+   * @param name the new name
+   * @throws IllegalStateException if the buffer is closed
+   */
+  public void renameGrandChild(Long id, long expectedVersion, String name) {
+    buffer(Target.GRANDCHILDREN, new Rename(id, expectedVersion, name));
+  }
+
+  /**
+   * Get the number of buffered rows.
+   *
+   * @return the rows to be written by the next flush
+   */
+  public int pending() {
+    return buffers.values().stream().mapToInt(Map::size).sum();
+  }
+
+  private static long expectedVersion(Long version) {
+    if (version == null) {
+      throw new IllegalArgumentException("Entity not persisted");
+    }
+    return version;
+  }
+
+  private void buffer(Target target, Rename rename) {
+    if (closed) {
+      throw new IllegalStateException("WriteBehindBuffer is closed");
+    }
+    buffers.get(target).put(rename.id, rename);
+
+    if (pending() >= props.getMaxPending() && flushRequested.compareAndSet(false, true)) {
+      scheduler.execute(this::scheduledFlush);
+    }
+  }
+
+  private void scheduledFlush() {
+    flushRequested.set(false);
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Write-behind flush failed", e);
+    }
+  }
+
+  /**
+   * Write the buffered renames in one transaction.
+   *
+   * @return the number of rows written, not counting the conflicts
+   * @throws IllegalStateException if called within an active transaction
+   * @throws org.springframework.dao.DataAccessException if the flush fails
+   */
+  public int flush() {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      throw new IllegalStateException("WriteBehindBuffer must be flushed outside of a transaction");
+    }
+
+    flushLock.lock();
+    try {
+      final Map<Target, List<Rename>> drained = drain();
+      if (drained.isEmpty()) {
+        return 0;
+      }
+
+      final Map<Target, List<Rename>> conflicts = new EnumMap<>(Target.class);
+      final int written;
+      try {
+        written = txTemplate.execute(status -> {
+          int count = 0;
+          for (Map.Entry<Target, List<Rename>> e : drained.entrySet()) {
+            count += write(e.getKey(), e.getValue(), conflicts);
+          }
+          return count;
+        });
+      } catch (TransientDataAccessException
+          | RecoverableDataAccessException
+          | DataAccessResourceFailureException e) {
+        requeue(drained);
+        throw e;
+      } catch (RuntimeException e) {
+        LOGGER.error("Write-behind flush failed, {} renames dropped",
+            drained.values().stream().mapToInt(List::size).sum(), e);
+        throw e;
+      }
+
+      // the updates bypass the persistence context, and so the second level cache
+      for (Map.Entry<Target, List<Rename>> e : drained.entrySet()) {
+        for (Rename r : e.getValue()) {
+          cache.evict(e.getKey().entityClass, r.id);
+        }
+      }
+      for (Map.Entry<Target, List<Rename>> e : conflicts.entrySet()) {
+        for (Rename r : e.getValue()) {
+          publisher.publishEvent(new WriteBehindConflictEvent(
+              this, e.getKey().entityClass, r.id, r.expectedVersion, r.name));
+        }
+      }
+      return written;
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  private Map<Target, List<Rename>> drain() {
+    final Map<Target, List<Rename>> drained = new EnumMap<>(Target.class);
+    for (Map.Entry<Target, Map<Long, Rename>> e : buffers.entrySet()) {
+      final List<Rename> renames = drain(e.getValue());
+      if (!renames.isEmpty()) {
+        drained.put(e.getKey(), renames);
+      }
+    }
+    return drained;
+  }
+
+  /**
+   * Remove the values of a concurrent buffer, each one only if still buffered: a newer
+   * value put since it was read is left for the next drain, not removed unseen.
+   *
+   * @param buffer the buffer, by id
+   * @param <V> the type of the buffered values, equal only to themselves
+   * @return the values removed
+   */
+  static <V> List<V> drain(Map<Long, V> buffer) {
+    final List<V> removed = new ArrayList<>();
+    for (Map.Entry<Long, V> e : buffer.entrySet()) {
+      if (buffer.remove(e.getKey(), e.getValue())) {
+        removed.add(e.getValue());
+      }
+    }
+    return removed;
+  }
+
+  private void requeue(Map<Target, List<Rename>> drained) {
+    for (Map.Entry<Target, List<Rename>> e : drained.entrySet()) {
+      final Map<Long, Rename> buffer = buffers.get(e.getKey());
+      for (Rename r : e.getValue()) {
+        buffer.putIfAbsent(r.id, r);
+      }
+    }
+  }
+
+  private int write(Target target, List<Rename> renames, Map<Target, List<Rename>> conflicts) {
+    final int[][] counts = jdbc.batchUpdate(target.sql, renames, props.getBatchSize(),
+        (ps, r) -> {
+          ps.setString(1, r.name);
+          ps.setLong(2, r.id);
+          ps.setLong(3, r.expectedVersion);
+        });
+
+    int written = 0;
+    int i = 0;
+    for (int[] batch : counts) {
+      for (int count : batch) {
+        final Rename r = renames.get(i++);
+        // drivers not reporting the row counts of a batch leave conflicts undetected
+        if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+          written++;
+        } else {
+          conflicts.computeIfAbsent(target, t -> new ArrayList<>()).add(r);
+        }
+      }
+    }
+    return written;
+  }
+
+  /**
+   * Stop the periodic flushes and write what is still buffered.
+   */
+  @PreDestroy
+  public void close() {
+    closed = true;
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(props.getFlushInterval().toMillis() + 5_000,
+          TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    for (int attempt = 1; attempt <= CLOSE_ATTEMPTS && pending() > 0; attempt++) {
+      try {
+        flush();
+      } catch (RuntimeException e) {
+        LOGGER.warn("Write-behind flush at close failed, attempt {}", attempt, e);
+      }
+    }
+    if (pending() > 0) {
+      LOGGER.error("Write-behind buffer closed, {} renames dropped", pending());
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.gpaglia.springlock.writebehind;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a buffered rename is dropped at flush, as the row was changed or
+ * deleted since the expected version was read.
+ */
+public class WriteBehindConflictEvent extends ApplicationEvent {
+  private static final long serialVersionUID = 1L;
+
+  private final Class<?> entityClass;
+  private final Long id;
+  private final long expectedVersion;
+  private final String name;
+
+  /**
+   * Create the event.
+   *
+   * @param source the buffer which flushed the rename
+   * @param entityClass the entity class
+   * @param id the entity id
+   * @param expectedVersion the version the rename was based on
+   * @param name the name which was not written
+   */
+  public WriteBehindConflictEvent(
+      Object source,
+      Class<?> entityClass,
+      Long id,
+      long expectedVersion,
+      String name
+  ) {
+    super(source);
+    this.entityClass = entityClass;
+    this.id = id;
+    this.expectedVersion = expectedVersion;
+    this.name = name;
+  }
+
+  /**
+   * Get the entity class.
+   *
+   * @return the entity class, {@code Child} or {@code GrandChild}
+   */
+  public Class<?> getEntityClass() {
+    return entityClass;
+  }
+
+  /**
+   * Get the id.
+   *
+   * @return the entity id
+   */
+  public Long getId() {
+    return id;
+  }
+
+  /**
+   * Get the expected version.
+   *
+   * @return the version the rename was based on
+   */
+  public long getExpectedVersion() {
+    return expectedVersion;
+  }
+
+  /**
+   * Get the name.
+   *
+   * @return the name which was not written
+   */
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String toString() {
+    return "WriteBehindConflictEvent [entityClass=" + entityClass.getSimpleName()
+        + ", id=" + id + ", expectedVersion=" + expectedVersion + "]";
+  }
+}
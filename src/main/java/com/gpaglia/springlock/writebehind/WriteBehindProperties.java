@@ -0,0 +1,98 @@
+package com.gpaglia.springlock.writebehind;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the {@link WriteBehindBuffer}, bound to {@code springlock.write-behind.*}.
+ */
+@Component
+@ConfigurationProperties(prefix = "springlock.write-behind")
+public class WriteBehindProperties {
+
+  /** Whether the write-behind buffer is enabled. */
+  private boolean enabled = false;
+
+  /** Time between two flushes of the buffered updates. */
+  private Duration flushInterval = Duration.ofMillis(200);
+
+  /** Buffered rows that trigger a flush before the interval elapses. */
+  private int maxPending = 1_000;
+
+  /** Updates sent to the database in one jdbc batch. */
+  private int batchSize = 50;
+
+  /**
+   * Get the enabled flag.
+   *
+   * @return the enabled flag
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Set the enabled flag.
+   *
+   * @param enabled the enabled flag to set
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Get the flush interval.
+   *
+   * @return the flush interval
+   */
+  public Duration getFlushInterval() {
+    return flushInterval;
+  }
+
+  /**
+   * Set the flush interval.
+   *
+   * @param flushInterval the flush interval to set
+   */
+  public void setFlushInterval(Duration flushInterval) {
+    this.flushInterval = flushInterval;
+  }
+
+  /**
+   * Get the max pending rows.
+   *
+   * @return the max pending rows
+   */
+  public int getMaxPending() {
+    return maxPending;
+  }
+
+  /**
+   * Set the max pending rows.
+   *
+   * @param maxPending the max pending rows to set
+   */
+  public void setMaxPending(int maxPending) {
+    this.maxPending = maxPending;
+  }
+
+  /**
+   * Get the batch size.
+   *
+   * @return the batch size
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Set the batch size.
+   *
+   * @param batchSize the batch size to set
+   */
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+}
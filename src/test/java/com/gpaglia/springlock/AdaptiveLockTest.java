@@ -0,0 +1,174 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.locking.AdaptiveLockProperties;
+import com.gpaglia.springlock.locking.AdaptiveParentLocker;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * AdaptiveLockTest, in a context of its own with low thresholds: a parent turns
+ * pessimistic at half of 4 attempts conflicting, and back at a fifth.
+ */
+@SpringBootTest(properties = {
+    "springlock.adaptive.window=1h",
+    "springlock.adaptive.min-samples=4",
+    "springlock.adaptive.enter-rate=0.5",
+    "springlock.adaptive.exit-rate=0.2",
+    "springlock.retry.max-attempts=3",
+    "springlock.retry.initial-backoff=1ms",
+    "springlock.retry.max-backoff=5ms"
+})
+public class AdaptiveLockTest {
+
+  @Autowired
+  private AdaptiveParentLocker locker;
+
+  @Autowired
+  private AdaptiveLockProperties props;
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private MeterRegistry registry;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private TransactionTemplate requiresNew;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    requiresNew = new TransactionTemplate(txManager);
+    requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  private void persistParent(Long id) {
+    tx.execute(status -> {
+      em.persist(new Parent(id, "Parent_Name"));
+      return null;
+    });
+  }
+
+  private double switches(String mode) {
+    Counter c = registry.find("springlock.adaptive.switches").tag("mode", mode).counter();
+    return c == null ? 0 : c.count();
+  }
+
+  /**
+   * Run a write which conflicts on its first attempt, as if a concurrent writer
+   * committed in between, and goes through on the second one.
+   */
+  private LockModeType conflictingWrite(Long id) {
+    final AtomicInteger attempts = new AtomicInteger();
+    return locker.execute(id, p -> {
+      if (attempts.incrementAndGet() == 1) {
+        requiresNew.execute(status -> parentRepo.pessimisticFindById(id));
+      }
+      p.setName("Parent_Name_" + attempts.get());
+      return em.getLockMode(p);
+    });
+  }
+
+  /**
+   * Run a write which goes through on its first attempt.
+   */
+  private LockModeType write(Long id) {
+    return locker.execute(id, p -> {
+      p.setName("Parent_Name");
+      return em.getLockMode(p);
+    });
+  }
+
+  @Test
+  public void propertiesTest() {
+    assertThat(props.getWindow(), is(Duration.ofHours(1)));
+    assertThat(props.getMinSamples(), is(4));
+    assertThat(props.getEnterRate(), is(0.5));
+    assertThat(props.getExitRate(), is(0.2));
+
+    // the defaults of the ones not set
+    assertThat(props.getBuckets(), is(10));
+    assertThat(props.getMaxTrackedIds(), is(10_000));
+  }
+
+  @Test
+  public void switchTest() {
+    final Long id = 2201L;
+    persistParent(id);
+    final double toPessimistic = switches("pessimistic");
+    final double toOptimistic = switches("optimistic");
+
+    assertThat(locker.currentMode(id), is(LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+    assertThat(conflictingWrite(id), is(LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+
+    // 1 conflict out of 2 attempts: the rate is reached, not the min samples
+    assertThat(locker.currentMode(id), is(LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+
+    // 2 out of 4
+    assertThat(conflictingWrite(id), is(LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+    assertThat(locker.currentMode(id), is(LockModeType.PESSIMISTIC_FORCE_INCREMENT));
+    assertThat(locker.pessimisticIds(), contains(id));
+    assertThat(switches("pessimistic"), is(toPessimistic + 1));
+
+    // below the enter rate but above the exit rate, down to 2 out of 9: stays pessimistic
+    for (int i = 0; i < 5; i++) {
+      assertThat(write(id), is(LockModeType.PESSIMISTIC_FORCE_INCREMENT));
+      assertThat(locker.currentMode(id), is(LockModeType.PESSIMISTIC_FORCE_INCREMENT));
+    }
+
+    // 2 out of 10, at the exit rate
+    assertThat(write(id), is(LockModeType.PESSIMISTIC_FORCE_INCREMENT));
+    assertThat(locker.currentMode(id), is(LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+    assertThat(locker.pessimisticIds(), is(empty()));
+    assertThat(switches("optimistic"), is(toOptimistic + 1));
+
+    assertThat(write(id), is(LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+  }
+
+  @Test
+  public void successesOnlyTest() {
+    final Long id = 2202L;
+    persistParent(id);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(write(id), is(LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+    }
+    assertThat(locker.currentMode(id), is(LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+  }
+
+  @Test
+  public void missingParentTest() {
+    assertThrows(ObjectRetrievalFailureException.class, () -> write(2203L));
+  }
+}
@@ -0,0 +1,106 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.export.AggregateExporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * AggregateExportTest, in a context of its own so that only its parents are exported.
+ */
+@SpringBootTest(properties = "springlock.export.chunk-size=7")
+public class AggregateExportTest {
+
+  @Autowired
+  private AggregateExporter exporter;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private static List<Long> ids(JsonNode array) {
+    List<Long> ids = new ArrayList<>();
+    array.forEach(n -> ids.add(n.get("id").asLong()));
+    return ids;
+  }
+
+  @Test
+  public void exportTest() throws Exception {
+    final int parents = 30;
+    TransactionTemplate tx = new TransactionTemplate(txManager);
+
+    // persisted in reverse order, exported in id order
+    tx.execute(status -> {
+      for (long id = 800 + parents; id > 800; id--) {
+        Parent p = new Parent(id, "Parent_" + id);
+        for (long c = 2; c >= 1; c--) {
+          Child child = new Child(id * 1000 + c, "Child_" + c);
+          child.setParent(p);
+          for (long g = 2; g >= 1; g--) {
+            new GrandChild((id * 1000 + c) * 100 + g, "GrandChild_" + g).setChild(child);
+          }
+        }
+        em.persist(p);
+      }
+      return null;
+    });
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertThat(exporter.exportNdjson(out), is((long) parents));
+
+    String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    assertThat(lines.length, is(parents));
+
+    ObjectMapper mapper = new ObjectMapper();
+    for (int i = 0; i < parents; i++) {
+      final long id = 801 + i;
+      JsonNode p = mapper.readTree(lines[i]);
+      assertThat(p.get("id").asLong(), is(id));
+      assertThat(p.get("name").asText(), is("Parent_" + id));
+      assertThat(p.get("version").asLong(), is(0L));
+      assertThat(ids(p.get("children")), contains(id * 1000 + 1, id * 1000 + 2));
+
+      JsonNode c = p.get("children").get(1);
+      assertThat(c.get("name").asText(), is("Child_2"));
+      assertThat(ids(c.get("grandChildren")),
+          contains((id * 1000 + 2) * 100 + 1, (id * 1000 + 2) * 100 + 2));
+    }
+  }
+
+  @Test
+  public void activeTransactionTest() {
+    TransactionTemplate tx = new TransactionTemplate(txManager);
+
+    assertThrows(IllegalStateException.class, () -> tx.execute(status -> {
+      try {
+        return exporter.exportNdjson(new ByteArrayOutputStream());
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }));
+  }
+}
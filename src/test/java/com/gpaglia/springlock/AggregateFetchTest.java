@@ -0,0 +1,153 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.transaction.TestTransaction;
+
+/**
+ * AggregateFetchTest.
+ */
+@SpringBootTest(properties = StatementCounter.PROPERTY)
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class AggregateFetchTest {
+
+  private static final int CHILDREN = 20;
+  private static final int GRANDCHILDREN = 5;
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private void persistAggregate(Long idParent) {
+    Parent p = new Parent(idParent, "Parent_Name");
+    for (long c = 1; c <= CHILDREN; c++) {
+      Child child = new Child(idParent * 1000 + c, "Child_" + c);
+      child.setParent(p);
+      for (long g = 1; g <= GRANDCHILDREN; g++) {
+        GrandChild gc = new GrandChild((idParent * 1000 + c) * 100 + g, "GrandChild_" + g);
+        gc.setChild(child);
+      }
+    }
+    em.persist(p);
+  }
+
+  private int walk(Parent p) {
+    int count = 0;
+    for (Child c : p.getChildren()) {
+      count += c.getGrandChildren().size();
+    }
+    return count;
+  }
+
+  @Test
+  @Transactional
+  public void findAggregateByIdTest() {
+    // flag the current tx for commit
+    TestTransaction.flagForCommit();
+
+    persistAggregate(1L);
+    em.flush();
+
+    TestTransaction.end();
+    em.clear();
+
+    // start a new transaction - no need to commit it
+    TestTransaction.start();
+
+    StatementCounter.reset();
+
+    Parent p = parentRepo.findAggregateById(1L).get();
+    assertThat(p.getChildren(), hasSize(CHILDREN));
+    assertThat(walk(p), is(CHILDREN * GRANDCHILDREN));
+
+    // parent with children, then all the grandchildren
+    assertThat(StatementCounter.STATEMENTS.get(), is(2L));
+  }
+
+  @Test
+  @Transactional
+  public void findAggregatesByIdInTest() {
+    // flag the current tx for commit
+    TestTransaction.flagForCommit();
+
+    persistAggregate(1L);
+    persistAggregate(2L);
+    persistAggregate(3L);
+    em.flush();
+
+    TestTransaction.end();
+    em.clear();
+
+    // start a new transaction - no need to commit it
+    TestTransaction.start();
+
+    StatementCounter.reset();
+
+    List<Parent> parents = parentRepo.findAggregatesByIdIn(Arrays.asList(1L, 2L, 3L));
+    assertThat(parents, hasSize(3));
+
+    int count = 0;
+    for (Parent p : parents) {
+      count += walk(p);
+    }
+    assertThat(count, is(3 * CHILDREN * GRANDCHILDREN));
+
+    // parents with children, then all the grandchildren
+    assertThat(StatementCounter.STATEMENTS.get(), is(2L));
+  }
+
+  @Test
+  @Transactional
+  public void batchFetchChildrenTest() {
+    // flag the current tx for commit
+    TestTransaction.flagForCommit();
+
+    persistAggregate(1L);
+    persistAggregate(2L);
+    persistAggregate(3L);
+    em.flush();
+
+    TestTransaction.end();
+    em.clear();
+
+    // start a new transaction - no need to commit it
+    TestTransaction.start();
+
+    StatementCounter.reset();
+
+    // plain query, without the entity graph
+    List<Parent> parents = em
+        .createQuery("select p from Parent p order by p.id", Parent.class)
+        .getResultList();
+
+    int count = 0;
+    for (Parent p : parents) {
+      count += walk(p);
+    }
+    assertThat(count, is(3 * CHILDREN * GRANDCHILDREN));
+
+    // parents, children of all the parents in one batch, then all the grandchildren
+    assertThat(StatementCounter.STATEMENTS.get(), is(3L));
+  }
+}
@@ -0,0 +1,156 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.lessThan;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.snapshot.AggregateSnapshotCache;
+import com.gpaglia.springlock.snapshot.ChildView;
+import com.gpaglia.springlock.snapshot.GrandChildView;
+import com.gpaglia.springlock.snapshot.ParentView;
+
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * AggregateSnapshotTest, in a context of its own with small segments, and where the
+ * child changes increment the version of their parent.
+ */
+@SpringBootTest(properties = {
+    "springlock.snapshot.enabled=true",
+    "springlock.snapshot.segment-size=1KB",
+    "springlock.snapshot.max-segments=2",
+    "springlock.versioning.enabled=true"
+})
+public class AggregateSnapshotTest {
+
+  @Autowired
+  private AggregateSnapshotCache cache;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    cache.clear();
+  }
+
+  private void persistAggregate(Long id, int children) {
+    tx.execute(status -> {
+      Parent p = new Parent(id, "Parent_" + id);
+      for (long c = 1; c <= children; c++) {
+        Child child = new Child(id * 1000 + c, "Child_" + c);
+        child.setParent(p);
+        if (c % 2 == 1) {
+          new GrandChild((id * 1000 + c) * 100 + 1, "GrandChild_1").setChild(child);
+          new GrandChild((id * 1000 + c) * 100 + 2, null).setChild(child);
+        }
+      }
+      em.persist(p);
+      return null;
+    });
+  }
+
+  @Test
+  public void readTest() {
+    persistAggregate(1801L, 2);
+    tx.execute(status -> {
+      em.persist(new Parent(1802L, "\u00dcn\u00efc\u00f6d\u00e9"));
+      return null;
+    });
+
+    ParentView p = cache.get(1801L).get();
+    assertThat(p.getId(), is(1801L));
+    assertThat(p.getVersion(), is(0L));
+    assertThat(p.getName(), is("Parent_1801"));
+    assertThat(p.getChildCount(), is(2));
+    assertThat(p.getChildren().stream().map(ChildView::getId).collect(Collectors.toList()),
+        contains(1801001L, 1801002L));
+
+    ChildView c1 = p.getChild(1801001L);
+    assertThat(c1.getName(), is("Child_1"));
+    assertThat(c1.getGrandChildren().stream().map(GrandChildView::getName)
+        .collect(Collectors.toList()), contains("GrandChild_1", null));
+    assertThat(p.getChild(1801002L).getGrandChildCount(), is(0));
+    assertThat(p.getChild(1L), is(nullValue()));
+
+    assertThat(cache.get(1802L).get().getName(), is("\u00dcn\u00efc\u00f6d\u00e9"));
+    assertThat(cache.get(1802L).get().getChildCount(), is(0));
+    assertThat(cache.get(-1L).isPresent(), is(false));
+    assertThat(cache.size(), is(2));
+  }
+
+  @Test
+  public void invalidationTest() {
+    persistAggregate(1803L, 2);
+
+    ParentView v0 = cache.get(1803L).get();
+    assertThat(cache.get(1803L, 0L).get().getName(), is("Parent_1803"));
+
+    tx.execute(status -> {
+      em.find(GrandChild.class, 180300101L).setName("Renamed");
+      return null;
+    });
+
+    // the cached version is still served to who asks for it
+    assertThat(cache.get(1803L, 0L).get().getVersion(), is(0L));
+
+    ParentView v1 = cache.get(1803L).get();
+    assertThat(v1.getVersion(), is(1L));
+    assertThat(v1.getChild(1803001L).getGrandChildren().get(0).getName(), is("Renamed"));
+    assertThat(v0.getChild(1803001L).getGrandChildren().get(0).getName(), is("GrandChild_1"));
+
+    tx.execute(status -> {
+      em.remove(em.find(Parent.class, 1803L));
+      return null;
+    });
+    assertThat(cache.get(1803L).isPresent(), is(false));
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void evictionTest() {
+    for (long id = 1811; id <= 1830; id++) {
+      persistAggregate(id, 2);
+      assertThat(cache.get(id).get().getId(), is(id));
+    }
+
+    // two segments of 1KB hold fewer aggregates than that
+    assertThat(cache.size(), lessThan(20));
+    assertThat(cache.allocatedBytes(), is(2048L));
+    assertThat(cache.get(1830L, 0L).get().getName(), is("Parent_1830"));
+
+    // those evicted are reloaded
+    ParentView first = cache.get(1811L).get();
+    assertThat(first.getChild(1811001L).getName(), is("Child_1"));
+
+    // an aggregate larger than a segment is not cached
+    persistAggregate(1831L, 40);
+    ParentView large = cache.get(1831L).get();
+    assertThat(large.getChildCount(), is(40));
+    assertThat(cache.get(1831L).get(), not(sameInstance(large)));
+    assertThat(cache.get(1831L, 0L).get().getChildren().get(39).getName(), is("Child_40"));
+  }
+}
@@ -0,0 +1,144 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * AggregateVersioningTest, in a context of its own where the parents version their
+ * whole aggregate.
+ */
+@SpringBootTest(properties = "springlock.versioning.enabled=true")
+public class AggregateVersioningTest {
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private TransactionTemplate requiresNew;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    requiresNew = new TransactionTemplate(txManager);
+    requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  private void persistAggregate(Long id) {
+    tx.execute(status -> {
+      Parent p = new Parent(id, "Parent_" + id);
+      for (long c = 1; c <= 2; c++) {
+        Child child = new Child(id * 1000 + c, "Child_" + c);
+        child.setParent(p);
+        new GrandChild((id * 1000 + c) * 100 + 1, "GrandChild_1").setChild(child);
+      }
+      em.persist(p);
+      return null;
+    });
+  }
+
+  private Long parentVersion(Long id) {
+    return tx.execute(status -> em.find(Parent.class, id).getVersion());
+  }
+
+  @Test
+  public void childChangeTest() {
+    persistAggregate(1701L);
+
+    // the parent is not loaded by the transaction
+    tx.execute(status -> {
+      em.find(Child.class, 1701001L).setName("Renamed");
+      return null;
+    });
+    assertThat(parentVersion(1701L), is(1L));
+
+    // nothing changed, nothing incremented
+    tx.execute(status -> em.find(Child.class, 1701001L));
+    assertThat(parentVersion(1701L), is(1L));
+  }
+
+  @Test
+  public void oncePerTransactionTest() {
+    persistAggregate(1702L);
+
+    tx.execute(status -> {
+      Parent p = em.find(Parent.class, 1702L);
+      p.getChild(1702001L).setName("Renamed_1");
+      em.flush();
+      p.getChild(1702002L).setName("Renamed_2");
+      p.getChild(1702002L).getGrandChild(170200201L).setName("Renamed_3");
+      return null;
+    });
+    assertThat(parentVersion(1702L), is(1L));
+
+    // the parent updated by itself as well
+    tx.execute(status -> {
+      Parent p = em.find(Parent.class, 1702L);
+      p.setName("Renamed");
+      p.getChild(1702001L).setName("Renamed_4");
+      return null;
+    });
+    assertThat(parentVersion(1702L), is(2L));
+
+    // the parent already force incremented
+    tx.execute(status -> {
+      Parent p = em.find(Parent.class, 1702L, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+      p.getChild(1702001L).getGrandChild(170200101L).setName("Renamed_5");
+      return null;
+    });
+    assertThat(parentVersion(1702L), is(3L));
+  }
+
+  @Test
+  public void deletedChildTest() {
+    persistAggregate(1703L);
+
+    tx.execute(status -> {
+      Child c = em.find(Child.class, 1703002L);
+      c.removeGrandChild(c.getGrandChild(170300201L));
+      return null;
+    });
+    assertThat(parentVersion(1703L), is(1L));
+  }
+
+  @Test
+  public void conflictTest() {
+    persistAggregate(1704L);
+
+    // a concurrent change to another child of the same parent fails the commit
+    assertThrows(ObjectOptimisticLockingFailureException.class, () ->
+        tx.execute(status -> {
+          Parent p = em.find(Parent.class, 1704L);
+          p.getChild(1704001L).setName("Mine");
+          requiresNew.execute(s -> {
+            em.find(Child.class, 1704002L).setName("Theirs");
+            return null;
+          });
+          return null;
+        }));
+
+    assertThat(parentVersion(1704L), is(1L));
+    assertThat(tx.execute(status -> em.find(Child.class, 1704001L).getName()), is("Child_1"));
+    assertThat(tx.execute(status -> em.find(Child.class, 1704002L).getName()), is("Theirs"));
+  }
+}
@@ -0,0 +1,104 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.async.AsyncRepositories;
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.Parent;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * AsyncRepositoriesTest, in a context of its own with a concurrency of 2.
+ */
+@SpringBootTest(properties = "springlock.async.max-concurrency=2")
+public class AsyncRepositoriesTest {
+
+  @Autowired
+  private AsyncRepositories async;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Test
+  public void fanOutTest() {
+    new TransactionTemplate(txManager).execute(status -> {
+      for (long id = 1401; id <= 1408; id++) {
+        Parent p = new Parent(id, "Parent_" + id);
+        new Child(id * 10, "Child_" + id).setParent(p);
+        em.persist(p);
+      }
+      return null;
+    });
+
+    assertThat(async.getMaxConcurrency(), is(2));
+
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    List<CompletableFuture<Parent>> loads = LongStream.rangeClosed(1401, 1408)
+        .mapToObj(id -> async.parents(repo -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try {
+            Thread.sleep(20);
+            return repo.findAggregateById(id).get();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          } finally {
+            running.decrementAndGet();
+          }
+        }))
+        .collect(Collectors.toList());
+
+    List<Long> ids = loads.stream()
+        .map(CompletableFuture::join)
+        .map(Parent::getId)
+        .collect(Collectors.toList());
+    assertThat(ids, contains(1401L, 1402L, 1403L, 1404L, 1405L, 1406L, 1407L, 1408L));
+    assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+
+    // the children are fetched before the aggregate is detached
+    Parent p = async.findAggregateById(1405L).join().get();
+    assertThat(p.getChildren().iterator().next().getName(), is("Child_1405"));
+    if (!async.isVirtualThreads()) {
+      assertThat(async.parents(repo -> Thread.currentThread().getName()).join(),
+          startsWith("springlock-async-"));
+    }
+  }
+
+  @Test
+  public void failureTest() {
+    CompletableFuture<Object> failed = async.inTransaction(status -> {
+      em.persist(new Parent(1409L, "Parent_1409"));
+      throw new IllegalStateException("failed");
+    });
+
+    CompletionException e = assertThrows(CompletionException.class, failed::join);
+    assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+
+    // rolled back
+    assertThat(async.parents(repo -> repo.existsById(1409L)).join(), is(false));
+  }
+}
@@ -0,0 +1,136 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * BulkVersionIncrementTest.
+ */
+@SpringBootTest()
+public class BulkVersionIncrementTest {
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+  }
+
+  private Map<Long, Long> persistParents(long firstId, int count) {
+    Map<Long, Long> versions = new HashMap<>();
+    tx.execute(status -> {
+      for (long id = firstId; id < firstId + count; id++) {
+        em.persist(new Parent(id, "Parent_" + id));
+        versions.put(id, 0L);
+      }
+      return null;
+    });
+    return versions;
+  }
+
+  private Long versionOf(Long id) {
+    return tx.execute(status -> em.find(Parent.class, id).getVersion());
+  }
+
+  @Test
+  public void incrementsAllTest() {
+    // more than one bulk chunk
+    Map<Long, Long> versions = persistParents(10_000L, 1200);
+
+    int updated = tx.execute(status -> parentRepo.forceIncrementVersions(versions));
+
+    assertThat(updated, is(1200));
+    assertThat(versionOf(10_000L), is(1L));
+    assertThat(versionOf(11_199L), is(1L));
+  }
+
+  @Test
+  public void alignsManagedParentsTest() {
+    Map<Long, Long> versions = persistParents(12_000L, 2);
+
+    tx.execute(status -> {
+      // managed before the bulk update, then dirtied
+      Parent p = em.find(Parent.class, 12_000L);
+      parentRepo.forceIncrementVersions(versions);
+      assertThat(p.getVersion(), is(1L));
+
+      p.setName("Parent_Name_NEW");
+      return null;
+    });
+
+    // the flush of the dirty parent did not fail on its version
+    assertThat(versionOf(12_000L), is(2L));
+    assertThat(versionOf(12_001L), is(1L));
+  }
+
+  @Test
+  public void rejectsStaleVersionsTest() {
+    Map<Long, Long> versions = persistParents(13_000L, 3);
+
+    // concurrent writers bump two of them
+    tx.execute(status -> parentRepo.pessimisticFindById(13_001L));
+    tx.execute(status -> parentRepo.pessimisticFindById(13_001L));
+    tx.execute(status -> parentRepo.pessimisticFindById(13_002L));
+
+    ObjectOptimisticLockingFailureException e = assertThrows(
+        ObjectOptimisticLockingFailureException.class,
+        () -> tx.execute(status -> parentRepo.forceIncrementVersions(versions)));
+
+    // 13002 is now at the version the bulk update would have given it, so it
+    // cannot be told apart from the incremented ones
+    assertThat(e.getIdentifier().toString(), is("[13001]"));
+
+    // the whole bulk increment was rolled back
+    assertThat(versionOf(13_000L), is(0L));
+    assertThat(versionOf(13_001L), is(2L));
+    assertThat(versionOf(13_002L), is(1L));
+  }
+
+  @Test
+  public void rejectsNullsTest() {
+    Map<Long, Long> versions = persistParents(14_000L, 2);
+    versions.put(14_001L, null);
+
+    InvalidDataAccessApiUsageException e = assertThrows(InvalidDataAccessApiUsageException.class,
+        () -> tx.execute(status -> parentRepo.forceIncrementVersions(versions)));
+    assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+
+    versions.remove(14_001L);
+    versions.put(null, 0L);
+    e = assertThrows(InvalidDataAccessApiUsageException.class,
+        () -> tx.execute(status -> parentRepo.forceIncrementVersions(versions)));
+    assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+
+    // rejected before any update
+    assertThat(versionOf(14_000L), is(0L));
+  }
+}
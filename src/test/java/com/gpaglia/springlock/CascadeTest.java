@@ -5,7 +5,7 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 
-import java.util.List;
+import java.util.Collection;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -49,7 +49,7 @@ public class CascadeTest {
   @Transactional
   public void testCascadeOnChildUpdate() {
     // set the ids
-    final Long idParent = 275L;
+    final Long idParent = 283L;
     final Long idChild1 = 1001L;
     final Long idChild2 = 1002L;   
     
@@ -79,7 +79,7 @@ public class CascadeTest {
     
     assertThat(pnew, notNullValue());
     
-    List<Child> children = p.getChildren();
+    Collection<Child> children = p.getChildren();
     
     assertThat(children, hasSize(2));
     Map<Long, Child> map = children.stream().collect(
@@ -103,7 +103,7 @@ public class CascadeTest {
     
     assertThat(pnew2, notNullValue());
     
-    List<Child> children2 = p.getChildren();
+    Collection<Child> children2 = p.getChildren();
     assertThat(children2, hasSize(2));
     
     Map<Long, Child> map2 = children2.stream().collect(
@@ -125,7 +125,7 @@ public class CascadeTest {
 
     assertThat(pfinal, notNullValue());
     
-    List<Child> childrenfinal = p.getChildren();
+    Collection<Child> childrenfinal = p.getChildren();
     assertThat(childrenfinal, hasSize(2));
     
     Map<Long, Child> mapfinal = childrenfinal.stream().collect(
@@ -142,7 +142,7 @@ public class CascadeTest {
   @Transactional
   public void testChildPersistOnUpdate() {
     // set the ids
-    final Long idParent = 275L;
+    final Long idParent = 283L;
     final Long idChild1 = 1001L;
     final Long idChild2 = 1002L;    
 
@@ -173,7 +173,7 @@ public class CascadeTest {
     
     assertThat(pnew, notNullValue());
     
-    List<Child> children = p.getChildren();
+    Collection<Child> children = p.getChildren();
     
     assertThat(children, hasSize(2));
     Map<Long, Child> map = children.stream().collect(
@@ -209,7 +209,7 @@ public class CascadeTest {
 
     assertThat(pfinal, notNullValue());
     
-    List<Child> childrenfinal = pfinal.getChildren();
+    Collection<Child> childrenfinal = pfinal.getChildren();
     assertThat(childrenfinal, hasSize(2));
     
     Map<Long, Child> mapfinal = childrenfinal.stream().collect(
@@ -226,7 +226,7 @@ public class CascadeTest {
   @Transactional
   public void testParentPersistOnUpdate() {
     // set the ids
-    final Long idParent = 275L;
+    final Long idParent = 283L;
     final Long idChild1 = 1001L;
     final Long idChild2 = 1002L;   
     
@@ -256,7 +256,7 @@ public class CascadeTest {
     
     assertThat(pnew, notNullValue());
     
-    List<Child> children = p.getChildren();
+    Collection<Child> children = p.getChildren();
     
     assertThat(children, hasSize(2));
     Map<Long, Child> map = children.stream().collect(
@@ -299,7 +299,7 @@ public class CascadeTest {
 
     assertThat(pfinal, notNullValue());
     
-    List<Child> childrenfinal = pfinal.getChildren();
+    Collection<Child> childrenfinal = pfinal.getChildren();
     assertThat(childrenfinal, hasSize(2));
     
     Map<Long, Child> mapfinal = childrenfinal.stream().collect(
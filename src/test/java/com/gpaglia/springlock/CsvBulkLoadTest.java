@@ -0,0 +1,124 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.ingest.CsvBulkLoader;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * CsvBulkLoadTest.
+ */
+@SpringBootTest(properties = "springlock.ingest.chunk-size=4")
+public class CsvBulkLoadTest {
+
+  @Autowired
+  private CsvBulkLoader loader;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Test
+  public void loadTest() {
+    StringBuilder parents = new StringBuilder("ID,NAME\n");
+    StringBuilder children = new StringBuilder("PARENT_ID,ID,NAME\n");
+    StringBuilder grandChildren = new StringBuilder("ID,NAME,CHILD_ID\n");
+    for (long id = 901; id <= 903; id++) {
+      parents.append(id).append(",Parent_").append(id).append('\n');
+      for (long c = 1; c <= 2; c++) {
+        long idChild = id * 1000 + c;
+        children.append(id).append(',').append(idChild).append(",Child_").append(c).append('\n');
+        for (long g = 1; g <= 2; g++) {
+          grandChildren.append(idChild * 100 + g).append(",GrandChild_").append(g)
+              .append(',').append(idChild).append('\n');
+        }
+      }
+    }
+
+    assertThat(loader.loadParents(new StringReader(parents.toString())), is(3L));
+    assertThat(loader.loadChildren(new StringReader(children.toString())), is(6L));
+    assertThat(loader.loadGrandChildren(new StringReader(grandChildren.toString())), is(12L));
+
+    TransactionTemplate tx = new TransactionTemplate(txManager);
+    tx.execute(status -> {
+      Parent p = em.find(Parent.class, 902L);
+      assertThat(p.getName(), is("Parent_902"));
+      assertThat(p.getVersion(), is(0L));
+
+      List<Long> ids = p.getChildren().stream().map(Child::getId).collect(Collectors.toList());
+      assertThat(ids, contains(902001L, 902002L));
+
+      Child c = p.getChild(902002L);
+      assertThat(c.getVersion(), is(0L));
+      assertThat(c.getGrandChildren().stream().map(GrandChild::getId).collect(Collectors.toList()),
+          contains(90200201L, 90200202L));
+      assertThat(c.getGrandChild(90200201L).getVersion(), is(0L));
+      return null;
+    });
+
+    // the loaded rows are versioned like persisted entities
+    tx.execute(status -> {
+      em.find(Parent.class, 902L).setName("Parent_902_NEW");
+      return null;
+    });
+    assertThat(tx.execute(status -> em.find(Parent.class, 902L).getVersion()), is(1L));
+  }
+
+  @Test
+  public void missingOwnerTest() {
+    StringBuilder parents = new StringBuilder("ID,NAME\n");
+    for (long id = 911; id <= 916; id++) {
+      parents.append(id).append(",Parent_").append(id).append('\n');
+    }
+    loader.loadParents(new StringReader(parents.toString()));
+
+    // the first chunk is committed, the second one fails on the missing parent
+    StringBuilder children = new StringBuilder("ID,NAME,PARENT_ID\n");
+    for (long id = 911; id <= 916; id++) {
+      children.append(id * 1000).append(",Child,").append(id == 916 ? 999 : id).append('\n');
+    }
+    assertThrows(DataIntegrityViolationException.class,
+        () -> loader.loadChildren(new StringReader(children.toString())));
+
+    TransactionTemplate tx = new TransactionTemplate(txManager);
+    assertThat(tx.execute(status -> em
+        .createQuery("select c.id from Child c where c.parent.id between 911 and 916 order by c.id",
+            Long.class)
+        .getResultList()), contains(911000L, 912000L, 913000L, 914000L));
+  }
+
+  @Test
+  public void invalidIdTest() {
+    DataIntegrityViolationException e = assertThrows(DataIntegrityViolationException.class,
+        () -> loader.loadParents(new StringReader("ID,NAME\n2501,Parent\n25O2,Parent\n")));
+    assertThat(e.getMessage(), startsWith("Invalid ID '25O2' at line 3 of the CSV"));
+    assertThat(e.getCause(), instanceOf(NumberFormatException.class));
+
+    e = assertThrows(DataIntegrityViolationException.class,
+        () -> loader.loadChildren(new StringReader("ID,NAME,PARENT_ID\n2501000,Child,\n")));
+    assertThat(e.getMessage(), startsWith("Invalid PARENT_ID 'null' at line 2 of the CSV"));
+  }
+}
@@ -0,0 +1,53 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Dbcp2ProfileTest, the application on the dbcp2 connection pool.
+ */
+@SpringBootTest()
+@ActiveProfiles("dbcp2")
+public class Dbcp2ProfileTest {
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @Test
+  public void poolTest() {
+    assertThat(dataSource, instanceOf(BasicDataSource.class));
+    BasicDataSource pool = (BasicDataSource) dataSource;
+    assertThat(pool.getMaxTotal(), is(10));
+    assertThat(pool.isPoolPreparedStatements(), is(true));
+
+    // the pooled connections have the lock timeout of the pessimistic locks
+    assertThat(new JdbcTemplate(dataSource).queryForObject("call LOCK_TIMEOUT()", Integer.class),
+        is(2000));
+
+    parentRepo.save(new Parent(1601L, "Parent_1601"));
+    Long version = new TransactionTemplate(txManager).execute(
+        status -> parentRepo.pessimisticFindByIdNowait(1601L).get().getVersion());
+    assertThat(version, is(1L));
+  }
+}
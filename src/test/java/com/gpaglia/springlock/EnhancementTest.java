@@ -0,0 +1,80 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.engine.spi.ManagedEntity;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * EnhancementTest, on the entities enhanced by the build; skipped when built with
+ * {@code -PnoEnhancement}.
+ */
+@SpringBootTest()
+public class EnhancementTest {
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @BeforeEach
+  public void assumeEnhanced() {
+    assumeTrue(new Parent(1L, "Parent_Name") instanceof SelfDirtinessTracker,
+        "the entities are not enhanced");
+  }
+
+  @Test
+  public void enhancedTest() {
+    // as the parent is
+    assertThat(new Child(1L, "Child_Name"), instanceOf(SelfDirtinessTracker.class));
+    assertThat(new GrandChild(1L, "GrandChild_Name"), instanceOf(SelfDirtinessTracker.class));
+  }
+
+  @Test
+  public void dirtyTrackingTest() {
+    final Long id = 701L;
+    TransactionTemplate tx = new TransactionTemplate(txManager);
+
+    tx.execute(status -> {
+      em.persist(new Parent(id, "Parent_Name"));
+      return null;
+    });
+
+    Long version = tx.execute(status -> {
+      Parent p = em.find(Parent.class, id);
+      SelfDirtinessTracker tracker = (SelfDirtinessTracker) p;
+
+      // managed through the enhanced entry, not a snapshot lookup
+      assertThat(((ManagedEntity) p).$$_hibernate_getEntityEntry(), notNullValue());
+      assertThat(tracker.$$_hibernate_getDirtyAttributes(), emptyArray());
+
+      p.setName("Parent_Name_NEW");
+      assertThat(tracker.$$_hibernate_getDirtyAttributes(), arrayContaining("name"));
+      return p.getVersion();
+    });
+
+    Parent p = tx.execute(status -> em.find(Parent.class, id));
+    assertThat(p.getName(), is("Parent_Name_NEW"));
+    assertThat(p.getVersion(), is(version + 1));
+  }
+}
@@ -0,0 +1,149 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.ids.EntityIdAllocator;
+import com.gpaglia.springlock.ids.PooledIdAllocator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * IdAllocatorTest.
+ */
+@SpringBootTest(properties = {
+    "springlock.ids.block-size=10",
+    "springlock.ids.initial-value=1000000"
+})
+public class IdAllocatorTest {
+
+  @Autowired
+  private EntityIdAllocator ids;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Test
+  public void concurrentNextIdTest() throws Exception {
+    final int threads = 8;
+    final int perThread = 2000;
+    final Set<Long> allocated = ConcurrentHashMap.newKeySet();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < perThread; i++) {
+            allocated.add(ids.nextId(Child.class));
+          }
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // no id handed out twice
+    assertThat(allocated.size(), is(threads * perThread));
+    assertThat(Collections.min(allocated), greaterThanOrEqualTo(1000000L));
+  }
+
+  @Test
+  public void persistTest() {
+    TransactionTemplate tx = new TransactionTemplate(txManager);
+
+    Long idParent = tx.execute(status -> {
+      Parent p = new Parent(ids.nextId(Parent.class), "Parent_Name");
+      Child c = new Child(ids.nextId(Child.class), "Child_Name");
+      c.setParent(p);
+      new GrandChild(ids.nextId(GrandChild.class), "GrandChild_Name").setChild(c);
+      em.persist(p);
+      return p.getId();
+    });
+
+    Parent p = tx.execute(status -> {
+      Parent found = em.find(Parent.class, idParent);
+      found.getChildren().iterator().next().getGrandChildren().size();
+      return found;
+    });
+    assertThat(p, notNullValue());
+    assertThat(p.getChildren().iterator().next().getGrandChildren().size(), is(1));
+  }
+
+  @Test
+  public void prefetchTest() throws Exception {
+    AtomicInteger fetches = new AtomicInteger();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      PooledIdAllocator allocator = new PooledIdAllocator(
+          () -> fetches.getAndIncrement() * 10L, executor, 10, 0.5);
+
+      for (long i = 0; i < 6; i++) {
+        assertThat(allocator.nextId(), is(i));
+      }
+
+      // the next block is fetched in the background, before this one runs out
+      long deadline = System.currentTimeMillis() + 5000;
+      while (fetches.get() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      assertThat(fetches.get(), is(2));
+
+      for (long i = 6; i < 15; i++) {
+        assertThat(allocator.nextId(), is(i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void failedFetchTest() {
+    AtomicInteger fetches = new AtomicInteger();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      PooledIdAllocator allocator = new PooledIdAllocator(() -> {
+        if (fetches.getAndIncrement() == 0) {
+          throw new IllegalStateException("sequence not available");
+        }
+        return 100L;
+      }, executor, 10, 0.5);
+
+      assertThrows(IllegalStateException.class, allocator::nextId);
+
+      // the failed fetch is not kept, the next call fetches again
+      assertThat(allocator.nextId(), is(100L));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
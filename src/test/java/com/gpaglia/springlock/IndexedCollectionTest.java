@@ -0,0 +1,116 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * IndexedCollectionTest.
+ */
+@SpringBootTest()
+public class IndexedCollectionTest {
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+  }
+
+  private static List<Long> ids(Parent p) {
+    return p.getChildren().stream().map(Child::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void reparentManyChildrenTest() {
+    final int n = 50_000;
+    Parent p1 = new Parent(1L, "Parent_1");
+    Parent p2 = new Parent(2L, "Parent_2");
+
+    List<Child> children = new ArrayList<>();
+    for (long c = 0; c < n; c++) {
+      Child child = new Child(c, "Child_" + c);
+      child.setParent(p1);
+      children.add(child);
+    }
+
+    // each move is a removal by id, not a scan of the children
+    for (Child child : children) {
+      child.setParent(p2);
+    }
+
+    assertThat(p1.getChildren(), hasSize(0));
+    assertThat(p2.getChildren(), hasSize(n));
+    assertThat(p2.getChild(42L), sameInstance(children.get(42)));
+    assertThat(p1.getChild(42L), nullValue());
+  }
+
+  @Test
+  public void removeAndReparentTest() {
+    final Long id1 = 601L;
+    final Long id2 = 602L;
+
+    tx.execute(status -> {
+      Parent p1 = new Parent(id1, "Parent_1");
+      for (long c = 3; c >= 1; c--) {
+        Child child = new Child(id1 * 1000 + c, "Child_" + c);
+        child.setParent(p1);
+        new GrandChild((id1 * 1000 + c) * 100, "GrandChild").setChild(child);
+      }
+      em.persist(p1);
+      em.persist(new Parent(id2, "Parent_2"));
+      return null;
+    });
+
+    // reloaded in id order
+    assertThat(tx.execute(status -> ids(em.find(Parent.class, id1))),
+        contains(id1 * 1000 + 1, id1 * 1000 + 2, id1 * 1000 + 3));
+
+    tx.execute(status -> {
+      Parent p1 = em.find(Parent.class, id1);
+      Parent p2 = em.find(Parent.class, id2);
+
+      // orphan removal of the first child, the second one moves to the other parent
+      assertThat(p1.removeChild(p1.getChild(id1 * 1000 + 1)), is(true));
+      p1.getChild(id1 * 1000 + 2).setParent(p2);
+      return null;
+    });
+
+    assertThat(tx.execute(status -> ids(em.find(Parent.class, id1))),
+        contains(id1 * 1000 + 3));
+    assertThat(tx.execute(status -> ids(em.find(Parent.class, id2))),
+        contains(id1 * 1000 + 2));
+    assertThat(tx.execute(status -> em.find(Child.class, id1 * 1000 + 1)), nullValue());
+    assertThat(tx.execute(status -> em.find(Parent.class, id2)
+        .getChild(id1 * 1000 + 2)
+        .getGrandChildren()
+        .size()), is(1));
+  }
+}
@@ -0,0 +1,69 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.transaction.TestTransaction;
+
+/**
+ * JdbcBatchingTest.
+ */
+@SpringBootTest(properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    StatementCounter.PROPERTY
+})
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class JdbcBatchingTest {
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Test
+  @Transactional
+  public void batchedCascadeInsertTest() {
+    // flag the current tx for commit
+    TestTransaction.flagForCommit();
+
+    Parent p = new Parent(1L, "Parent_Name");
+    for (long c = 1; c <= 100; c++) {
+      Child child = new Child(c, "Child_" + c);
+      child.setParent(p);
+      for (long g = 1; g <= 10; g++) {
+        GrandChild gc = new GrandChild(c * 100 + g, "GrandChild_" + g);
+        gc.setChild(child);
+      }
+    }
+
+    Statistics stats = em.getEntityManagerFactory()
+        .unwrap(SessionFactory.class)
+        .getStatistics();
+    stats.clear();
+    StatementCounter.reset();
+
+    em.persist(p);
+    em.flush();
+
+    TestTransaction.end();
+
+    assertThat(stats.getEntityInsertCount(), is(1L + 100L + 1000L));
+
+    // one statement per table, executed in batches of 50 inserts: 1 + 2 + 20
+    assertThat(stats.getPrepareStatementCount(), is(3L));
+    assertThat(StatementCounter.BATCHES.get(), is(23L));
+    assertThat(StatementCounter.STATEMENTS.get(), is(0L));
+  }
+}
@@ -0,0 +1,47 @@
+package com.gpaglia.springlock;
+
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * LockStressTest, concurrent transactions on a few hot parents with all the lock
+ * modes, see {@link StressHarness}. Tuned by the {@code springlock.stress.*} system
+ * properties, which the build passes on to the tests, e.g.
+ * {@code gradle test -Dspringlock.stress.threads=16 -Dspringlock.stress.duration=30s}.
+ */
+@SpringBootTest(properties = "springlock.lock.timeout-ms=1000")
+public class LockStressTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LockStressTest.class);
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @Autowired
+  private Environment env;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  @Test
+  public void stressTest() throws Exception {
+    StressHarness harness = new StressHarness(
+        parentRepo, em, txManager, StressHarness.Settings.from(env), 3001L);
+    harness.seed();
+    harness.run();
+    LOGGER.info(harness.report());
+    harness.verify();
+  }
+}
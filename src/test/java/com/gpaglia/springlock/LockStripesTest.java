@@ -0,0 +1,232 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.locking.LockStripesProperties;
+import com.gpaglia.springlock.locking.ParentLockStripes;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * LockStripesTest, in a context of its own with 6 stripes, rounded up to 8, so that
+ * the ids 8 apart share a stripe.
+ */
+@SpringBootTest(properties = {
+    "springlock.stripes.count=6",
+    "springlock.stripes.timeout=200ms"
+})
+public class LockStripesTest {
+
+  @Autowired
+  private ParentLockStripes stripes;
+
+  @Autowired
+  private LockStripesProperties props;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private void persistParents(Long... ids) {
+    tx.execute(status -> {
+      for (Long id : ids) {
+        em.persist(new Parent(id, "Parent_" + id));
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Hold the stripe of a parent on another thread, until released.
+   */
+  private Future<?> holdStripe(Long id, CountDownLatch held, CountDownLatch release) {
+    return executor.submit(() -> {
+      ReentrantLock lock = stripes.stripeFor(id);
+      lock.lock();
+      try {
+        held.countDown();
+        release.await(10, TimeUnit.SECONDS);
+      } finally {
+        lock.unlock();
+      }
+      return null;
+    });
+  }
+
+  @Test
+  public void mappingTest() {
+    assertThat(props.getCount(), is(6));
+
+    Set<ReentrantLock> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (long id = 0; id < 64; id++) {
+      distinct.add(stripes.stripeFor(id));
+    }
+    assertThat(distinct.size(), is(8));
+
+    assertThat(stripes.stripeFor(2401L), is(sameInstance(stripes.stripeFor(2401L))));
+    assertThat(stripes.stripeFor(2401L), is(sameInstance(stripes.stripeFor(2409L))));
+    assertThat(stripes.stripeFor(2401L), is(not(sameInstance(stripes.stripeFor(2402L)))));
+  }
+
+  @Test
+  public void executeTest() {
+    final Long id = 2401L;
+    persistParents(id);
+
+    LockModeType mode = stripes.execute(id, p -> {
+      assertThat(stripes.stripeFor(id).isHeldByCurrentThread(), is(true));
+      return em.getLockMode(p);
+    });
+    assertThat(mode, is(LockModeType.PESSIMISTIC_FORCE_INCREMENT));
+    assertThat(stripes.stripeFor(id).isLocked(), is(false));
+
+    Parent p = tx.execute(status -> em.find(Parent.class, id));
+    assertThat(p.getVersion(), is(1L));
+
+    assertThrows(ObjectRetrievalFailureException.class, () -> stripes.execute(2499L, x -> x));
+    assertThat(stripes.stripeFor(2499L).isLocked(), is(false));
+  }
+
+  @Test
+  public void reentrancyTest() {
+    final ReentrantLock lock = stripes.stripeFor(2402L);
+    lock.lock();
+    try {
+      // taken again by the thread holding it, and given back once done
+      assertThat(stripes.executeLocked(2402L, status -> lock.getHoldCount()), is(2));
+      assertThat(stripes.executeLocked(2410L, status -> lock.getHoldCount()), is(2));
+      assertThat(lock.getHoldCount(), is(1));
+    } finally {
+      lock.unlock();
+    }
+
+    // but not within a transaction
+    assertThrows(IllegalStateException.class, () ->
+        tx.execute(status -> stripes.executeLocked(2402L, inner -> null)));
+    assertThat(lock.isLocked(), is(false));
+  }
+
+  @Test
+  public void releaseOnExceptionTest() {
+    final Long id = 2403L;
+    persistParents(id);
+
+    assertThrows(IllegalArgumentException.class, () -> stripes.execute(id, p -> {
+      p.setName("Rolled back");
+      throw new IllegalArgumentException("failed");
+    }));
+    assertThat(stripes.stripeFor(id).isLocked(), is(false));
+
+    Parent p = tx.execute(status -> em.find(Parent.class, id));
+    assertThat(p.getName(), is("Parent_" + id));
+    assertThat(p.getVersion(), is(0L));
+  }
+
+  @Test
+  public void timeoutTest() throws Exception {
+    final CountDownLatch held = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Future<?> holder = holdStripe(2404L, held, release);
+    held.await(5, TimeUnit.SECONDS);
+
+    try {
+      long start = System.nanoTime();
+      assertThrows(CannotAcquireLockException.class, () ->
+          stripes.executeLocked(2404L, status -> null));
+      assertThat(System.nanoTime() - start >= Duration.ofMillis(200).toNanos(), is(true));
+
+      // the lower stripe taken first is released on the timeout
+      assertThrows(CannotAcquireLockException.class, () ->
+          stripes.executeLocked(Arrays.asList(2404L, 2401L), status -> null));
+      assertThat(stripes.stripeFor(2401L).isLocked(), is(false));
+    } finally {
+      release.countDown();
+      holder.get(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void manyParentsTest() throws Exception {
+    final List<Long> ids = Arrays.asList(2413L, 2411L, 2412L, 2414L);
+    persistParents(ids.toArray(new Long[0]));
+
+    List<Long> locked = stripes.execute(ids, parents -> {
+      ids.forEach(id -> assertThat(stripes.stripeFor(id).isHeldByCurrentThread(), is(true)));
+      return parents.stream().map(Parent::getId).collect(Collectors.toList());
+    });
+    assertThat(locked, contains(2411L, 2412L, 2413L, 2414L));
+    ids.forEach(id -> assertThat(stripes.stripeFor(id).isLocked(), is(false)));
+
+    // taken in stripe order whatever the order of the ids: opposite orders never deadlock
+    final List<Long> reversed = Arrays.asList(2414L, 2413L, 2412L, 2411L);
+    final CountDownLatch start = new CountDownLatch(1);
+    Future<?> first = executor.submit(() -> {
+      start.await();
+      for (int i = 0; i < 20; i++) {
+        stripes.execute(ids, parents -> parents.size());
+      }
+      return null;
+    });
+    Future<?> second = executor.submit(() -> {
+      start.await();
+      for (int i = 0; i < 20; i++) {
+        stripes.execute(reversed, parents -> parents.size());
+      }
+      return null;
+    });
+    start.countDown();
+    first.get(30, TimeUnit.SECONDS);
+    second.get(30, TimeUnit.SECONDS);
+
+    Parent p = tx.execute(status -> em.find(Parent.class, 2411L));
+    assertThat(p.getVersion(), is(41L));
+  }
+}
@@ -0,0 +1,222 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * LockTimeoutTest, in a context of its own so that only its parents are queued.
+ */
+@SpringBootTest(properties = "springlock.lock.timeout-ms=500")
+public class LockTimeoutTest {
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private void persistParents(long from, long to) {
+    tx.execute(status -> {
+      for (long id = from; id <= to; id++) {
+        em.persist(new Parent(id, "Parent_" + id));
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Lock the parents in a transaction of another thread, held until released.
+   */
+  private Future<?> holdLocks(CountDownLatch locked, CountDownLatch release, Long... ids) {
+    return executor.submit(() -> tx.execute(status -> {
+      for (Long id : ids) {
+        em.find(Parent.class, id, LockModeType.PESSIMISTIC_WRITE);
+      }
+      locked.countDown();
+      try {
+        release.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return null;
+    }));
+  }
+
+  /**
+   * Pick the next unlocked parents in a transaction of another thread.
+   */
+  private List<Long> otherWorker(int n) {
+    try {
+      return executor.submit(() -> tx.execute(
+          status -> ids(parentRepo.findNextUnlockedParents(n)))).get(10, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static List<Long> ids(List<Parent> parents) {
+    return parents.stream().map(Parent::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void nowaitTest() throws Exception {
+    persistParents(1201L, 1202L);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> holder = holdLocks(locked, release, 1201L);
+    assertThat(locked.await(10, TimeUnit.SECONDS), is(true));
+
+    try {
+      Long version = tx.execute(status -> {
+        long start = System.nanoTime();
+        assertThrows(CannotAcquireLockException.class,
+            () -> parentRepo.pessimisticFindByIdNowait(1201L));
+        assertThat(System.nanoTime() - start, lessThan(TimeUnit.MILLISECONDS.toNanos(400)));
+
+        assertThrows(CannotAcquireLockException.class,
+            () -> parentRepo.pessimisticFindById(1201L, Duration.ofMillis(50)));
+
+        // the transaction is still usable
+        return parentRepo.pessimisticFindByIdNowait(1202L).get().getVersion();
+      });
+      assertThat(version, is(1L));
+    } finally {
+      release.countDown();
+      holder.get(10, TimeUnit.SECONDS);
+    }
+
+    // free again, and missing parents are not found
+    assertThat(tx.execute(status -> parentRepo.pessimisticFindByIdNowait(1201L).isPresent()),
+        is(true));
+    assertThat(tx.execute(status -> parentRepo.pessimisticFindByIdNowait(-1L).isPresent()),
+        is(false));
+  }
+
+  @Test
+  public void waitAlongsideNowaitTest() throws Exception {
+    persistParents(2601L, 2603L);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> holder = holdLocks(locked, release, 2601L);
+    assertThat(locked.await(10, TimeUnit.SECONDS), is(true));
+
+    try {
+      // a caller waiting for the locked row
+      CountDownLatch waiting = new CountDownLatch(1);
+      Future<?> waiter = executor.submit(() -> tx.execute(status -> {
+        waiting.countDown();
+        return assertThrows(CannotAcquireLockException.class,
+            () -> parentRepo.pessimisticFindById(2601L, Duration.ofSeconds(3)));
+      }));
+      assertThat(waiting.await(10, TimeUnit.SECONDS), is(true));
+      Thread.sleep(200);
+
+      // does not hold up the callers on the other rows
+      long start = System.nanoTime();
+      tx.execute(status -> {
+        assertThat(parentRepo.pessimisticFindByIdNowait(2602L).isPresent(), is(true));
+        assertThat(ids(parentRepo.pessimisticFindAllById(
+            Arrays.asList(2603L), Duration.ZERO)), contains(2603L));
+        return null;
+      });
+      // the first free row among those of all the tests
+      assertThat(tx.execute(status -> parentRepo.findNextUnlockedParents(1)), hasSize(1));
+      assertThat(System.nanoTime() - start, lessThan(TimeUnit.MILLISECONDS.toNanos(1000)));
+
+      // nor those on the same row, failing within their own timeout
+      start = System.nanoTime();
+      assertThrows(CannotAcquireLockException.class, () -> tx.execute(
+          status -> parentRepo.pessimisticFindByIdNowait(2601L)));
+      assertThat(System.nanoTime() - start, lessThan(TimeUnit.MILLISECONDS.toNanos(400)));
+
+      assertThat(waiter.isDone(), is(false));
+      waiter.get(10, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+      holder.get(10, TimeUnit.SECONDS);
+    }
+
+    // out of the way of the skip locked workers of the other tests
+    tx.execute(status -> em
+        .createQuery("delete from Parent p where p.id between 2601 and 2603")
+        .executeUpdate());
+  }
+
+  @Test
+  public void skipLockedTest() throws Exception {
+    persistParents(1301L, 1306L);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> holder = holdLocks(locked, release, 1301L, 1303L);
+    assertThat(locked.await(10, TimeUnit.SECONDS), is(true));
+
+    try {
+      tx.execute(status -> {
+        assertThat(ids(parentRepo.findNextUnlockedParents(3)), contains(1302L, 1304L, 1305L));
+
+        // another worker skips the rows of both transactions
+        assertThat(otherWorker(3), contains(1306L));
+
+        // the rows locked here are skipped as well
+        assertThat(ids(parentRepo.findNextUnlockedParents(3)), contains(1306L));
+        return null;
+      });
+    } finally {
+      release.countDown();
+      holder.get(10, TimeUnit.SECONDS);
+    }
+
+    assertThat(tx.execute(status -> ids(parentRepo.findNextUnlockedParents(2))),
+        contains(1301L, 1302L));
+  }
+}
@@ -0,0 +1,131 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.locking.OptimisticRetryTemplate;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * OptimisticRetryTest.
+ */
+@SpringBootTest(properties = {
+    "springlock.retry.max-attempts=3",
+    "springlock.retry.initial-backoff=1ms",
+    "springlock.retry.max-backoff=5ms"
+})
+public class OptimisticRetryTest {
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private OptimisticRetryTemplate retry;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private TransactionTemplate requiresNew;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    requiresNew = new TransactionTemplate(txManager);
+    requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  private void persistParent(Long id) {
+    tx.execute(status -> {
+      em.persist(new Parent(id, "Parent_Name"));
+      return null;
+    });
+  }
+
+  /**
+   * Bump the version in a separate transaction, as a concurrent writer would do.
+   */
+  private void concurrentIncrement(Long id) {
+    requiresNew.execute(status -> parentRepo.pessimisticFindById(id));
+  }
+
+  @Test
+  public void retriesOnConflictTest() {
+    Long id = 301L;
+    persistParent(id);
+
+    AtomicInteger attempts = new AtomicInteger();
+
+    Parent p = retry.execute(status -> {
+      Parent p1 = parentRepo.optimisticFindById(id).get();
+      if (attempts.incrementAndGet() == 1) {
+        concurrentIncrement(id);
+      }
+      p1.setName("Parent_Name_NEW");
+      return p1;
+    });
+
+    // the first attempt conflicted, the second one went through
+    assertThat(attempts.get(), is(2));
+    assertThat(p.getName(), is("Parent_Name_NEW"));
+
+    Parent pfinal = tx.execute(status -> em.find(Parent.class, id));
+    assertThat(pfinal.getName(), is("Parent_Name_NEW"));
+  }
+
+  @Test
+  public void givesUpAfterMaxAttemptsTest() {
+    Long id = 302L;
+    persistParent(id);
+
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThrows(ObjectOptimisticLockingFailureException.class, () ->
+        retry.execute(status -> {
+          attempts.incrementAndGet();
+          Parent p1 = parentRepo.optimisticFindById(id).get();
+          concurrentIncrement(id);
+          return p1;
+        }));
+
+    assertThat(attempts.get(), is(3));
+  }
+
+  @Test
+  public void doesNotRetryOtherFailuresTest() {
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThrows(IllegalArgumentException.class, () ->
+        retry.execute(status -> {
+          attempts.incrementAndGet();
+          throw new IllegalArgumentException("not a lock failure");
+        }));
+
+    assertThat(attempts.get(), is(1));
+  }
+
+  @Test
+  public void rejectsOuterTransactionTest() {
+    assertThrows(IllegalStateException.class, () ->
+        tx.execute(status -> retry.execute(inner -> null)));
+  }
+}
@@ -0,0 +1,243 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * OrderedLockTest, in a context of its own with a short lock timeout.
+ */
+@SpringBootTest(properties = "springlock.lock.timeout-ms=300")
+public class OrderedLockTest {
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private void persistParents(long from, long to) {
+    tx.execute(status -> {
+      for (long id = from; id <= to; id++) {
+        em.persist(new Parent(id, "Parent_" + id));
+      }
+      return null;
+    });
+  }
+
+  private Long version(Long id) {
+    return tx.execute(status -> em.find(Parent.class, id).getVersion());
+  }
+
+  private static List<Long> ids(List<Parent> parents) {
+    return parents.stream().map(Parent::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void idOrderTest() {
+    persistParents(2001L, 2005L);
+
+    List<Parent> parents = tx.execute(status -> {
+      // already managed, locked in place
+      em.find(Parent.class, 2003L);
+      return parentRepo.pessimisticFindAllById(Arrays.asList(2004L, 2001L, 2003L, 2001L));
+    });
+    assertThat(ids(parents), contains(2001L, 2003L, 2004L));
+    assertThat(parents.stream().map(Parent::getVersion).collect(Collectors.toList()),
+        contains(1L, 1L, 1L));
+    assertThat(version(2002L), is(0L));
+    assertThat(version(2003L), is(1L));
+  }
+
+  @Test
+  public void noDeadlockTest() throws Exception {
+    persistParents(2011L, 2013L);
+    final int rounds = 20;
+
+    // opposite orders, each transaction holding its locks a while
+    final List<Future<?>> transfers = Arrays.asList(
+        executor.submit(() -> transfer(rounds, 2011L, 2012L, 2013L)),
+        executor.submit(() -> transfer(rounds, 2013L, 2012L, 2011L)));
+    for (Future<?> f : transfers) {
+      f.get(60, TimeUnit.SECONDS);
+    }
+
+    assertThat(version(2011L), is(2L * rounds));
+    assertThat(version(2013L), is(2L * rounds));
+  }
+
+  private void transfer(int rounds, Long... ids) {
+    for (int i = 0; i < rounds; i++) {
+      tx.execute(status -> {
+        parentRepo.pessimisticFindAllById(Arrays.asList(ids));
+        try {
+          Thread.sleep(2);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return null;
+      });
+    }
+  }
+
+  @Test
+  public void missingTest() {
+    persistParents(2021L, 2021L);
+
+    ObjectRetrievalFailureException e = assertThrows(ObjectRetrievalFailureException.class,
+        () -> tx.execute(status -> parentRepo.pessimisticFindAllById(Arrays.asList(-1L, 2021L))));
+    assertThat(e.getIdentifier(), is(Arrays.asList(-1L)));
+
+    // rolled back
+    assertThat(version(2021L), is(0L));
+  }
+
+  @Test
+  public void slowBatchTest() throws Exception {
+    persistParents(2041L, 2044L);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> holder = executor.submit(() -> tx.execute(status -> {
+      em.find(Parent.class, 2042L, LockModeType.PESSIMISTIC_WRITE);
+      locked.countDown();
+      try {
+        release.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return null;
+    }));
+    assertThat(locked.await(10, TimeUnit.SECONDS), is(true));
+
+    try {
+      // a batch waiting for the locked row
+      CountDownLatch waiting = new CountDownLatch(1);
+      Future<?> batch = executor.submit(() -> tx.execute(status -> {
+        waiting.countDown();
+        return assertThrows(CannotAcquireLockException.class,
+            () -> parentRepo.pessimisticFindAllById(
+                Arrays.asList(2041L, 2042L), Duration.ofSeconds(3)));
+      }));
+      assertThat(waiting.await(10, TimeUnit.SECONDS), is(true));
+      Thread.sleep(200);
+
+      // does not hold up the locks of the other rows
+      long start = System.nanoTime();
+      tx.execute(status -> {
+        assertThat(parentRepo.pessimisticFindByIdNowait(2043L).isPresent(), is(true));
+        assertThat(ids(parentRepo.pessimisticFindAllById(
+            Arrays.asList(2044L), Duration.ZERO)), contains(2044L));
+        return null;
+      });
+      assertThat(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000), is(true));
+
+      assertThat(batch.isDone(), is(false));
+      batch.get(10, TimeUnit.SECONDS);
+      assertThat(version(2041L), is(0L));
+    } finally {
+      release.countDown();
+      holder.get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void timeoutTest() throws Exception {
+    persistParents(2031L, 2033L);
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> holder = executor.submit(() -> tx.execute(status -> {
+      em.find(Parent.class, 2032L, LockModeType.PESSIMISTIC_WRITE);
+      locked.countDown();
+      try {
+        release.await(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return null;
+    }));
+    assertThat(locked.await(10, TimeUnit.SECONDS), is(true));
+
+    try {
+      // none locked, and the transaction goes on
+      Long version = tx.execute(status -> {
+        CannotAcquireLockException e = assertThrows(CannotAcquireLockException.class,
+            () -> parentRepo.pessimisticFindAllById(
+                Arrays.asList(2033L, 2032L, 2031L), Duration.ofMillis(50)));
+        assertThat(e.getMessage().contains("[2032]"), is(true));
+        return parentRepo.pessimisticFindAllById(Arrays.asList(2033L), Duration.ZERO)
+            .get(0).getVersion();
+      });
+      assertThat(version, is(1L));
+      assertThat(version(2031L), is(0L));
+
+      // the row lock times out after the first one was locked: rolled back, or its
+      // connection closed, as hikari evicts the connections of the lock timeouts
+      RuntimeException e = assertThrows(RuntimeException.class,
+          () -> tx.execute(status -> parentRepo.pessimisticFindAllById(
+              Arrays.asList(2032L, 2031L))));
+      Throwable failure = e instanceof TransactionSystemException
+          ? ((TransactionSystemException) e).getApplicationException()
+          : e;
+      assertThat(failure, instanceOf(PessimisticLockingFailureException.class));
+      assertThat(failure, not(instanceOf(CannotAcquireLockException.class)));
+      assertThat(version(2031L), is(0L));
+    } finally {
+      release.countDown();
+      holder.get(10, TimeUnit.SECONDS);
+    }
+
+    assertThat(ids(tx.execute(status -> parentRepo.pessimisticFindAllById(
+        Arrays.asList(2032L, 2031L), Duration.ZERO))), contains(2031L, 2032L));
+  }
+}
@@ -0,0 +1,237 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasKey;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.metrics.LockingEndpoint;
+import com.gpaglia.springlock.metrics.PersistenceMetrics;
+import com.gpaglia.springlock.metrics.SessionMetricsListener;
+import com.gpaglia.springlock.repositories.LockStrategy;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * PersistenceMetricsTest.
+ */
+@SpringBootTest()
+public class PersistenceMetricsTest {
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @Autowired
+  private MeterRegistry registry;
+
+  @Autowired
+  private LockingEndpoint endpoint;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private TransactionTemplate requiresNew;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    requiresNew = new TransactionTemplate(txManager);
+    requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  private void persistParent(Long id) {
+    tx.execute(status -> {
+      em.persist(new Parent(id, "Parent_Name"));
+      return null;
+    });
+  }
+
+  /** Summed over the lock modes, one timer each. */
+  private long lockAcquireCount(String method, String outcome) {
+    return registry.find(PersistenceMetrics.LOCK_ACQUIRE)
+        .tag("method", method)
+        .tag("outcome", outcome)
+        .timers()
+        .stream()
+        .mapToLong(Timer::count)
+        .sum();
+  }
+
+  private long commitCount(String outcome) {
+    Timer t = registry.find(PersistenceMetrics.COMMIT).tag("outcome", outcome).timer();
+    return t == null ? 0 : t.count();
+  }
+
+  private double counter(String name) {
+    Counter c = registry.find(name).counter();
+    return c == null ? 0 : c.count();
+  }
+
+  @Test
+  public void lockAcquireTest() {
+    Long id = 501L;
+    persistParent(id);
+
+    long before = lockAcquireCount("pessimisticFindById", "ok");
+    long commits = commitCount("ok");
+
+    tx.execute(status -> parentRepo.pessimisticFindById(id));
+
+    assertThat(lockAcquireCount("pessimisticFindById", "ok"), is(before + 1));
+    assertThat(commitCount("ok"), is(commits + 1));
+
+    // the lock strategy finder is timed too, the plain finder is not
+    long forUpdate = lockAcquireCount("findByIdForUpdate", "ok");
+    tx.execute(status -> parentRepo.findByIdForUpdate(id, LockStrategy.PESSIMISTIC_WRITE));
+    tx.execute(status -> parentRepo.findById(id));
+    assertThat(lockAcquireCount("findByIdForUpdate", "ok"), is(forUpdate + 1));
+    assertThat(lockAcquireCount("findById", "ok"), is(0L));
+
+    // as the finders of the custom fragment, marked as such
+    long findAll = lockAcquireCount("pessimisticFindAllById", "ok");
+    tx.execute(status -> parentRepo.pessimisticFindAllById(Collections.singletonList(id)));
+    tx.execute(status -> parentRepo.pessimisticFindAllById(
+        Collections.singletonList(id), Duration.ZERO));
+    assertThat(lockAcquireCount("pessimisticFindAllById", "ok"), is(findAll + 2));
+  }
+
+  @Test
+  public void optimisticConflictTest() {
+    Long id = 502L;
+    persistParent(id);
+
+    double conflicts = registry.find(PersistenceMetrics.OPTIMISTIC_CONFLICTS)
+        .tag("entity", "Parent")
+        .counters()
+        .stream()
+        .mapToDouble(Counter::count)
+        .sum();
+    long failedCommits = commitCount("conflict");
+
+    assertThrows(OptimisticLockingFailureException.class, () -> tx.execute(status -> {
+      Parent p = em.find(Parent.class, id);
+      // a concurrent writer commits first
+      requiresNew.execute(s -> parentRepo.pessimisticFindById(id));
+      p.setName("Parent_Name_NEW");
+      return null;
+    }));
+
+    assertThat(registry.find(PersistenceMetrics.OPTIMISTIC_CONFLICTS)
+        .tag("entity", "Parent")
+        .counter()
+        .count(), is(conflicts + 1));
+    assertThat(commitCount("conflict"), is(failedCommits + 1));
+  }
+
+  @Test
+  public void pessimisticTimeoutTest() throws Exception {
+    Long id = 503L;
+    persistParent(id);
+
+    double timeouts = counter(PersistenceMetrics.PESSIMISTIC_TIMEOUTS);
+    long failedFinds = lockAcquireCount("pessimisticFindById", "timeout");
+
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> holder = executor.submit(() -> tx.execute(status -> {
+        parentRepo.pessimisticFindById(id);
+        locked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return null;
+      }));
+
+      locked.await();
+
+      // the pool drops the connection of the timed out statement, so the rollback
+      // fails too: check the exception of the finder itself
+      AtomicReference<RuntimeException> failure = new AtomicReference<>();
+      assertThrows(RuntimeException.class, () -> tx.execute(status -> {
+        try {
+          return parentRepo.pessimisticFindById(id);
+        } catch (RuntimeException e) {
+          failure.set(e);
+          throw e;
+        }
+      }));
+      assertThat(failure.get(), instanceOf(PessimisticLockingFailureException.class));
+
+      release.countDown();
+      holder.get();
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+
+    assertThat(counter(PersistenceMetrics.PESSIMISTIC_TIMEOUTS), is(timeouts + 1));
+    assertThat(lockAcquireCount("pessimisticFindById", "timeout"), is(failedFinds + 1));
+  }
+
+  @Test
+  public void statementsPerTransactionTest() {
+    Long id = 504L;
+    persistParent(id);
+
+    DistributionSummary statements = registry.find(SessionMetricsListener.STATEMENTS).summary();
+    long transactions = statements.count();
+
+    tx.execute(status -> em.find(Parent.class, id));
+
+    assertThat(statements.count(), is(transactions + 1));
+    assertThat(statements.max(), greaterThan(0.0));
+  }
+
+  @Test
+  public void endpointTest() {
+    Long id = 505L;
+    persistParent(id);
+    tx.execute(status -> parentRepo.optimisticFindById(id));
+
+    Map<String, Object> summary = endpoint.locking();
+
+    assertThat(summary, hasKey("lockAcquire"));
+    assertThat(summary, hasKey("commits"));
+    assertThat(summary, hasKey("optimisticConflicts"));
+    assertThat(summary, hasKey("pessimisticTimeouts"));
+    assertThat(summary, hasKey("statementsPerTransaction"));
+    assertThat(summary, hasKey("poolUsage"));
+  }
+}
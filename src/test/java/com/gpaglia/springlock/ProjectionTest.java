@@ -0,0 +1,116 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ChildRepository;
+import com.gpaglia.springlock.repositories.ChildSummary;
+import com.gpaglia.springlock.repositories.GrandChildRepository;
+import com.gpaglia.springlock.repositories.GrandChildSummary;
+import com.gpaglia.springlock.repositories.ParentRepository;
+import com.gpaglia.springlock.repositories.ParentSummary;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * ProjectionTest.
+ */
+@SpringBootTest()
+public class ProjectionTest {
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private ChildRepository childRepo;
+
+  @Autowired
+  private GrandChildRepository grandChildRepo;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+  }
+
+  private int managedEntities() {
+    return em.unwrap(SessionImplementor.class)
+        .getPersistenceContext()
+        .getNumberOfManagedEntities();
+  }
+
+  @Test
+  public void summariesTest() {
+    final Long id1 = 1101L;
+    final Long id2 = 1102L;
+
+    tx.execute(status -> {
+      Parent p1 = new Parent(id1, "Parent_1");
+      for (long c = 1; c <= 3; c++) {
+        Child child = new Child(id1 * 1000 + c, "Child_" + c);
+        child.setParent(p1);
+        for (long g = 1; g <= c; g++) {
+          new GrandChild((id1 * 1000 + c) * 100 + g, "GrandChild_" + g).setChild(child);
+        }
+      }
+      em.persist(p1);
+      em.persist(new Parent(id2, "Parent_2"));
+      return null;
+    });
+
+    tx.execute(status -> {
+      List<ParentSummary> parents = parentRepo.findAllSummaries()
+          .stream()
+          .filter(s -> s.getId().equals(id1) || s.getId().equals(id2))
+          .collect(Collectors.toList());
+      assertThat(parents.size(), is(2));
+      assertThat(parents.get(0).getName(), is("Parent_1"));
+      assertThat(parents.get(0).getChildCount(), is(3L));
+      assertThat(parents.get(1).getChildCount(), is(0L));
+
+      ParentSummary p1 = parentRepo.findSummaryById(id1).get();
+      assertThat(p1.getVersion(), is(0L));
+
+      List<ChildSummary> children = childRepo.findSummariesByParentId(id1);
+      assertThat(children.stream().map(ChildSummary::getGrandChildCount)
+          .collect(Collectors.toList()), contains(1L, 2L, 3L));
+      assertThat(children.get(0).getParentId(), is(id1));
+
+      List<GrandChildSummary> grandChildren =
+          grandChildRepo.findSummariesByChildId(id1 * 1000 + 2);
+      assertThat(grandChildren.stream().map(GrandChildSummary::getId)
+          .collect(Collectors.toList()), contains(110100201L, 110100202L));
+
+      // nothing loaded into the persistence context
+      assertThat(managedEntities(), is(0));
+      return null;
+    });
+
+    // nor locked: the version is unchanged
+    assertThat(parentRepo.findSummaryById(id1).get().getVersion(), is(0L));
+    assertThat(parentRepo.findSummaryById(-1L).isPresent(), is(false));
+  }
+}
@@ -0,0 +1,124 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * SecondLevelCacheTest.
+ */
+@SpringBootTest(properties = {
+    "springlock.cache.enabled=true",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class SecondLevelCacheTest {
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private Statistics stats;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    stats = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+  }
+
+  private void persistParent(Long id) {
+    tx.execute(status -> {
+      Parent p = new Parent(id, "Parent_Name");
+      new Child(id * 10, "Child_Name").setParent(p);
+      em.persist(p);
+      return null;
+    });
+  }
+
+  private Long cachedFindVersion(Long id) {
+    return tx.execute(status -> em.find(Parent.class, id).getVersion());
+  }
+
+  @Test
+  public void cachedReadTest() {
+    Long id = 401L;
+    persistParent(id);
+
+    // first read populates the cache, the second one is served by it
+    tx.execute(status -> em.find(Parent.class, id).getChildren().size());
+    stats.clear();
+
+    int children = tx.execute(status -> em.find(Parent.class, id).getChildren().size());
+
+    // parent, children collection and child
+    assertThat(children, is(1));
+    assertThat(stats.getSecondLevelCacheHitCount(), is(3L));
+    assertThat(stats.getPrepareStatementCount(), is(0L));
+  }
+
+  @Test
+  public void optimisticForceIncrementTest() {
+    Long id = 402L;
+    persistParent(id);
+    assertThat(cachedFindVersion(id), is(0L));
+
+    tx.execute(status -> parentRepo.optimisticFindById(id));
+
+    // the cached entry does not hold the old version
+    assertThat(cachedFindVersion(id), is(1L));
+
+    tx.execute(status -> em.find(Parent.class, id, LockModeType.OPTIMISTIC_FORCE_INCREMENT));
+    assertThat(cachedFindVersion(id), is(2L));
+  }
+
+  @Test
+  public void pessimisticForceIncrementTest() {
+    Long id = 403L;
+    persistParent(id);
+    assertThat(cachedFindVersion(id), is(0L));
+
+    tx.execute(status -> parentRepo.pessimisticFindById(id));
+    assertThat(cachedFindVersion(id), is(1L));
+
+    tx.execute(status -> em.find(Parent.class, id, LockModeType.PESSIMISTIC_FORCE_INCREMENT));
+    assertThat(cachedFindVersion(id), is(2L));
+  }
+
+  @Test
+  public void updateAfterForceIncrementTest() {
+    Long id = 404L;
+    persistParent(id);
+    cachedFindVersion(id);
+
+    tx.execute(status -> parentRepo.pessimisticFindById(id));
+
+    // a write based on the cached state does not fail its version check
+    tx.execute(status -> {
+      em.find(Parent.class, id).setName("Parent_Name_NEW");
+      return null;
+    });
+
+    assertThat(cachedFindVersion(id), is(2L));
+  }
+}
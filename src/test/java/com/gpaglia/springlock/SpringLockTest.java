@@ -6,6 +6,7 @@ import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.LockStrategy;
 import com.gpaglia.springlock.repositories.ParentRepository;
 
 import java.util.Optional;
@@ -283,10 +284,10 @@ public class SpringLockTest {
     TestTransaction.flagForCommit();
 
     // get the object again from DB, requiring the lock
-    // this time using the repository with the @Lock annotation
-    // and a custom query
+    // this time using the repository lock strategy finder
 
-    Optional<Parent> popt = parentRepo.findById(id);
+    Optional<Parent> popt =
+        parentRepo.findByIdForUpdate(id, LockStrategy.OPTIMISTIC_FORCE_INCREMENT);
     assertThat(popt.isPresent(), is(true));
     Parent p1 = popt.get();
 
@@ -316,5 +317,61 @@ public class SpringLockTest {
 
     
   }
+
+  @Test
+  @Transactional
+  public void plainFindByIdTest() {
+
+    // flag the current tx for commit
+    TestTransaction.flagForCommit();
+
+    // set the id
+    Long id = 282L;
+    
+    // persist it, version is 0
+    Parent p0 = new Parent(id, "Parent_Name");
+    em.persist(p0);
+    em.flush();
+    assertThat(p0.getVersion(), is(0L));
+
+    // commit the transaction
+    TestTransaction.end();
+
+    // clear the persistence context
+    em.clear();
+
+    // start a new transaction
+    TestTransaction.start();
+    TestTransaction.flagForCommit();
+
+    // the standard finder takes no lock: reading and saving back
+    // an unchanged parent does not write it
+    Parent p1 = parentRepo.findById(id).get();
+    Parent p2 = parentRepo.saveAndFlush(p1);
+    assertThat(p2.getVersion(), is(0L));
+
+    // commit
+    TestTransaction.end();
+
+    // version unchanged after commit
+    assertThat(p2.getVersion(), is(0L));
+
+    // neither does the merge of a detached parent by save
+    em.clear();
+    TestTransaction.start();
+    TestTransaction.flagForCommit();
+    parentRepo.save(p2);
+    TestTransaction.end();
+
+    TestTransaction.start();
+    TestTransaction.flagForCommit();
+
+    // get the object again from DB, by em to exclude any locks
+    Parent p3 = em.find(Parent.class, id);
+
+    // the version is still 0L
+    assertThat(p3, is(notNullValue()));
+    assertThat(p3.getVersion(), is(0L));
+  }
   
 }
\ No newline at end of file
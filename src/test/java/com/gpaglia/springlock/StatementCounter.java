@@ -0,0 +1,34 @@
+package com.gpaglia.springlock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Counts the jdbc round trips of all the sessions, registered by the tests with
+ * the {@link #PROPERTY} spring property.
+ */
+public class StatementCounter extends BaseSessionEventListener {
+  private static final long serialVersionUID = 1L;
+
+  static final String PROPERTY = "spring.jpa.properties.hibernate.session.events.auto="
+      + "com.gpaglia.springlock.StatementCounter";
+
+  static final AtomicLong BATCHES = new AtomicLong();
+  static final AtomicLong STATEMENTS = new AtomicLong();
+
+  @Override
+  public void jdbcExecuteBatchStart() {
+    BATCHES.incrementAndGet();
+  }
+
+  @Override
+  public void jdbcExecuteStatementStart() {
+    STATEMENTS.incrementAndGet();
+  }
+
+  static void reset() {
+    BATCHES.set(0);
+    STATEMENTS.set(0);
+  }
+}
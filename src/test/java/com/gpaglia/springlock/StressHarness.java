@@ -0,0 +1,366 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.core.env.Environment;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs concurrent read-modify-write transactions on the parents, each one locking a
+ * parent picked with a zipfian distribution by one of the {@link Mode}s, then checks
+ * that none of the committed ones was lost.
+ *
+ * <p>The name of each parent holds a counter, incremented by each transaction: the
+ * counters read by the committed transactions of a parent must be 0, 1, 2... without
+ * duplicates nor gaps, their versions strictly increasing in that order, and the final
+ * counter the number of commits.
+ */
+class StressHarness {
+
+  /**
+   * How a transaction loads the parent it updates.
+   */
+  enum Mode {
+    /** {@code optimisticFindById}, OPTIMISTIC_FORCE_INCREMENT. */
+    OPTIMISTIC,
+    /** {@code pessimisticFindById}, PESSIMISTIC_FORCE_INCREMENT. */
+    PESSIMISTIC,
+    /** {@code findById}, relying on the version check of the update. */
+    PLAIN
+  }
+
+  /**
+   * The settings of a run, from the {@code springlock.stress.*} properties, e.g. set as
+   * system properties of the test run.
+   */
+  static final class Settings {
+    int threads = 4;
+    int parents = 20;
+    double skew = 1.0;
+    Duration duration = Duration.ofSeconds(3);
+    final Map<Mode, Integer> mix = new EnumMap<>(Mode.class);
+
+    static Settings from(Environment env) {
+      final Settings s = new Settings();
+      s.threads = env.getProperty("springlock.stress.threads", Integer.class, s.threads);
+      s.parents = env.getProperty("springlock.stress.parents", Integer.class, s.parents);
+      s.skew = env.getProperty("springlock.stress.skew", Double.class, s.skew);
+      s.duration = env.getProperty("springlock.stress.duration", Duration.class, s.duration);
+      // e.g. optimistic=2,pessimistic=1,plain=1
+      for (String weight
+          : env.getProperty("springlock.stress.mix", "optimistic=1,pessimistic=1,plain=1")
+              .split(",")) {
+        final String[] kv = weight.trim().split("=");
+        s.mix.put(Mode.valueOf(kv[0].trim().toUpperCase()), Integer.valueOf(kv[1].trim()));
+      }
+      return s;
+    }
+
+    @Override
+    public String toString() {
+      return "threads=" + threads + ", parents=" + parents + ", skew=" + skew
+          + ", duration=" + duration + ", mix=" + mix;
+    }
+  }
+
+  /**
+   * Samples the ranks 0..n-1 with the probability of rank k proportional to
+   * {@code 1 / (k + 1)^skew}.
+   */
+  static final class Zipf {
+    private final double[] cdf;
+
+    Zipf(int n, double skew) {
+      cdf = new double[n];
+      double sum = 0;
+      for (int k = 0; k < n; k++) {
+        sum += 1 / Math.pow(k + 1, skew);
+        cdf[k] = sum;
+      }
+      for (int k = 0; k < n; k++) {
+        cdf[k] /= sum;
+      }
+    }
+
+    int next(Random random) {
+      final int i = Arrays.binarySearch(cdf, random.nextDouble());
+      return Math.min(i >= 0 ? i : -i - 1, cdf.length - 1);
+    }
+  }
+
+  /**
+   * Latencies counted in power of two buckets of microseconds.
+   */
+  static final class Histogram {
+    private static final int BUCKETS = 32;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos) {
+      final long micros = Math.max(1, nanos / 1_000);
+      counts.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros)));
+    }
+
+    long count() {
+      long n = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        n += counts.get(i);
+      }
+      return n;
+    }
+
+    /** The upper bound of the bucket of the percentile, in microseconds. */
+    long percentile(double p) {
+      final long rank = (long) Math.ceil(count() * p / 100);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += counts.get(i);
+        if (seen >= rank && seen > 0) {
+          return 1L << (i + 1);
+        }
+      }
+      return 0;
+    }
+
+    void appendTo(StringBuilder out) {
+      final long total = count();
+      for (int i = 0; i < BUCKETS; i++) {
+        final long c = counts.get(i);
+        if (c > 0) {
+          out.append(String.format("    < %8d us %7d %s%n",
+              1L << (i + 1), c, bar(c, total)));
+        }
+      }
+    }
+
+    private static String bar(long c, long total) {
+      final char[] bar = new char[(int) Math.max(1, 50 * c / total)];
+      Arrays.fill(bar, '#');
+      return new String(bar);
+    }
+  }
+
+  /** A committed transaction: the counter it read and the version it committed. */
+  private static final class Commit {
+    final long counter;
+    final long version;
+
+    Commit(long counter, long version) {
+      this.counter = counter;
+      this.version = version;
+    }
+  }
+
+  private final ParentRepository parentRepo;
+  private final EntityManager em;
+  private final TransactionTemplate tx;
+  private final Settings settings;
+  private final long firstId;
+
+  private final Map<Mode, Histogram> latencies = new EnumMap<>(Mode.class);
+  private final Map<Mode, Histogram> aborts = new EnumMap<>(Mode.class);
+  private final Map<Long, Queue<Commit>> commits = new ConcurrentHashMap<>();
+  private final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+  private long elapsedNanos;
+
+  StressHarness(
+      ParentRepository parentRepo,
+      EntityManager em,
+      PlatformTransactionManager txManager,
+      Settings settings,
+      long firstId
+  ) {
+    this.parentRepo = parentRepo;
+    this.em = em;
+    this.tx = new TransactionTemplate(txManager);
+    this.settings = settings;
+    this.firstId = firstId;
+    for (Mode m : Mode.values()) {
+      latencies.put(m, new Histogram());
+      aborts.put(m, new Histogram());
+    }
+  }
+
+  /**
+   * Persist the parents, with their counter at 0.
+   */
+  void seed() {
+    tx.execute(status -> {
+      for (long id = firstId; id < firstId + settings.parents; id++) {
+        em.persist(new Parent(id, "0"));
+      }
+      return null;
+    });
+  }
+
+  /**
+   * Run the workers for the configured duration.
+   *
+   * @throws Exception if a worker does not stop
+   */
+  void run() throws Exception {
+    final Zipf zipf = new Zipf(settings.parents, settings.skew);
+    final Mode[] modes = weightedModes();
+    final ExecutorService executor = Executors.newFixedThreadPool(settings.threads);
+    final CountDownLatch start = new CountDownLatch(1);
+    final long end = System.nanoTime() + settings.duration.toNanos();
+
+    try {
+      final List<Future<?>> workers = new ArrayList<>();
+      for (int t = 0; t < settings.threads; t++) {
+        workers.add(executor.submit(() -> {
+          start.await();
+          final Random random = ThreadLocalRandom.current();
+          while (System.nanoTime() < end) {
+            execute(modes[random.nextInt(modes.length)], firstId + zipf.next(random));
+          }
+          return null;
+        }));
+      }
+
+      final long begin = System.nanoTime();
+      start.countDown();
+      for (Future<?> w : workers) {
+        w.get(settings.duration.toMillis() + 60_000, TimeUnit.MILLISECONDS);
+      }
+      elapsedNanos = System.nanoTime() - begin;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Mode[] weightedModes() {
+    final List<Mode> modes = new ArrayList<>();
+    settings.mix.forEach((m, w) -> {
+      for (int i = 0; i < w; i++) {
+        modes.add(m);
+      }
+    });
+    return modes.toArray(new Mode[0]);
+  }
+
+  private void execute(Mode mode, Long id) {
+    final long start = System.nanoTime();
+    try {
+      final long[] read = new long[1];
+      final Parent p = tx.execute(status -> {
+        final Parent parent = load(mode, id);
+        read[0] = Long.parseLong(parent.getName());
+        parent.setName(Long.toString(read[0] + 1));
+        return parent;
+      });
+      latencies.get(mode).record(System.nanoTime() - start);
+      commits.computeIfAbsent(id, k -> new ConcurrentLinkedQueue<>())
+          .add(new Commit(read[0], p.getVersion()));
+    } catch (ConcurrencyFailureException | TransactionSystemException e) {
+      // lock conflicts and timeouts, the connections of the latter being evicted
+      aborts.get(mode).record(System.nanoTime() - start);
+    } catch (RuntimeException e) {
+      errors.add(e);
+    }
+  }
+
+  private Parent load(Mode mode, Long id) {
+    switch (mode) {
+      case OPTIMISTIC:
+        return parentRepo.optimisticFindById(id).get();
+      case PESSIMISTIC:
+        return parentRepo.pessimisticFindById(id).get();
+      default:
+        return parentRepo.findById(id).get();
+    }
+  }
+
+  /**
+   * Check the invariants against the database.
+   */
+  void verify() {
+    assertThat(errors, is(empty()));
+
+    for (long id = firstId; id < firstId + settings.parents; id++) {
+      final List<Commit> committed = new ArrayList<>(
+          commits.getOrDefault(id, new ConcurrentLinkedQueue<>()));
+      committed.sort(Comparator.comparingLong(c -> c.counter));
+
+      long lastVersion = 0;
+      for (int i = 0; i < committed.size(); i++) {
+        final Commit c = committed.get(i);
+        // each commit read the counter of the previous one: no update lost
+        assertThat("counter read by commit " + i + " of parent " + id, c.counter, is((long) i));
+        // and incremented the version past it
+        assertThat("version of commit " + i + " of parent " + id, c.version,
+            greaterThan(lastVersion));
+        lastVersion = c.version;
+      }
+
+      final Long pid = id;
+      final Parent p = tx.execute(status -> em.find(Parent.class, pid));
+      assertThat("counter of parent " + id, p.getName(), is(Long.toString(committed.size())));
+      assertThat("version of parent " + id, p.getVersion(), is(lastVersion));
+    }
+  }
+
+  /**
+   * Get the report of the run: throughput, latency histograms and hot parents.
+   *
+   * @return the report
+   */
+  String report() {
+    final StringBuilder out = new StringBuilder(String.format(
+        "%nStress run: %s%n", settings));
+    long total = 0;
+    for (Mode m : Mode.values()) {
+      total += latencies.get(m).count();
+    }
+    out.append(String.format("  %d commits in %.1f s, %.0f tx/s%n",
+        total, elapsedNanos / 1e9, total / (elapsedNanos / 1e9)));
+
+    for (Mode m : Mode.values()) {
+      final Histogram h = latencies.get(m);
+      final Histogram a = aborts.get(m);
+      if (h.count() + a.count() == 0) {
+        continue;
+      }
+      out.append(String.format("  %-11s commits %6d aborts %6d  p50 < %d us p90 < %d us"
+          + " p99 < %d us%n", m, h.count(), a.count(),
+          h.percentile(50), h.percentile(90), h.percentile(99)));
+      h.appendTo(out);
+    }
+
+    out.append("  hottest parents:");
+    commits.entrySet().stream()
+        .sorted((x, y) -> Integer.compare(y.getValue().size(), x.getValue().size()))
+        .limit(5)
+        .forEach(e -> out.append(' ').append(e.getKey()).append('=').append(e.getValue().size()));
+    return out.append(String.format("%n")).toString();
+  }
+}
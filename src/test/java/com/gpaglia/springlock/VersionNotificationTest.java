@@ -0,0 +1,202 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.notification.FileVersionChangeTransport;
+import com.gpaglia.springlock.notification.NotificationProperties;
+import com.gpaglia.springlock.notification.ParentVersionChange;
+import com.gpaglia.springlock.notification.ParentVersionChangedEvent;
+import com.gpaglia.springlock.repositories.ParentRepository;
+import com.gpaglia.springlock.snapshot.AggregateSnapshotCache;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * VersionNotificationTest, in a context of its own which shares its changes through a
+ * log file, and where the child changes increment the version of their parent.
+ */
+@SpringBootTest(properties = {
+    "springlock.notification.enabled=true",
+    "springlock.notification.node-id=node-a",
+    "springlock.notification.transport=file",
+    "springlock.notification.file=${java.io.tmpdir}/springlock-${random.uuid}.log",
+    "springlock.notification.poll-interval=10ms",
+    "springlock.versioning.enabled=true",
+    "springlock.snapshot.enabled=true"
+})
+public class VersionNotificationTest {
+
+  @Autowired
+  private ParentRepository parentRepo;
+
+  @Autowired
+  private AggregateSnapshotCache snapshots;
+
+  @Autowired
+  private NotificationProperties props;
+
+  @Autowired
+  private ConfigurableApplicationContext ctx;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+  private final List<ParentVersionChangedEvent> events = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+    ctx.addApplicationListener((ApplicationListener<ParentVersionChangedEvent>) events::add);
+  }
+
+  private void persistAggregate(Long id) {
+    tx.execute(status -> {
+      Parent p = new Parent(id, "Parent_" + id);
+      new Child(id * 1000 + 1, "Child_1").setParent(p);
+      em.persist(p);
+      return null;
+    });
+  }
+
+  private List<String> changesOf(Long id) {
+    return events.stream()
+        .filter(e -> e.getId().equals(id))
+        .map(e -> e.getVersion() + (e.isDeleted() ? "D" : "") + (e.isLocal() ? "" : "R"))
+        .collect(Collectors.toList());
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void localChangesTest() {
+    final Long id = 1901L;
+    persistAggregate(id);
+    assertThat(changesOf(id), is(empty()));
+
+    tx.execute(status -> {
+      em.find(Parent.class, id).setName("Renamed");
+      return null;
+    });
+    assertThat(changesOf(id), contains("1"));
+
+    // force incremented before completion, once with the child change
+    tx.execute(status -> {
+      parentRepo.optimisticFindById(id).get().getChild(id * 1000 + 1).setName("Renamed");
+      return null;
+    });
+    assertThat(changesOf(id), contains("1", "2"));
+
+    tx.execute(status -> parentRepo.pessimisticFindById(id));
+    assertThat(changesOf(id), contains("1", "2", "3"));
+
+    // incremented by the aggregate versioning, after an intermediate flush
+    tx.execute(status -> {
+      em.find(Child.class, id * 1000 + 1).setName("Again");
+      em.flush();
+      return null;
+    });
+    assertThat(changesOf(id), contains("1", "2", "3", "4"));
+
+    // rolled back, not notified
+    tx.execute(status -> {
+      parentRepo.pessimisticFindById(id);
+      status.setRollbackOnly();
+      return null;
+    });
+    assertThat(changesOf(id), contains("1", "2", "3", "4"));
+
+    tx.execute(status -> {
+      em.remove(em.find(Parent.class, id));
+      return null;
+    });
+    assertThat(changesOf(id), contains("1", "2", "3", "4", "4D"));
+  }
+
+  @Test
+  public void bulkIncrementTest() {
+    final Long managed = 2101L;
+    final Long other = 2102L;
+    persistAggregate(managed);
+    persistAggregate(other);
+
+    final Map<Long, Long> expected = new HashMap<>();
+    expected.put(managed, 0L);
+    expected.put(other, 0L);
+
+    // rolled back, not notified
+    tx.execute(status -> {
+      parentRepo.forceIncrementVersions(expected);
+      status.setRollbackOnly();
+      return null;
+    });
+    assertThat(changesOf(managed), is(empty()));
+    assertThat(changesOf(other), is(empty()));
+
+    // the one not in the persistence context notified as well
+    tx.execute(status -> {
+      em.find(Parent.class, managed);
+      return parentRepo.forceIncrementVersions(expected);
+    });
+    assertThat(changesOf(managed), contains("1"));
+    assertThat(changesOf(other), contains("1"));
+  }
+
+  @Test
+  public void remoteChangesTest() throws Exception {
+    final Long id = 1902L;
+    persistAggregate(id);
+    persistAggregate(1903L);
+    assertThat(snapshots.get(1903L).get().getVersion(), is(0L));
+
+    final List<ParentVersionChange> received = new CopyOnWriteArrayList<>();
+    try (FileVersionChangeTransport other = new FileVersionChangeTransport(
+        props.getFile(), "node-b", Duration.ofMillis(10))) {
+      other.start(received::add);
+
+      // sent to the other node
+      tx.execute(status -> parentRepo.pessimisticFindById(id));
+      await(() -> !received.isEmpty());
+      assertThat(received, contains(new ParentVersionChange("node-a", id, 1L, false)));
+
+      // received from the other node, and its stale snapshot dropped
+      final int cached = snapshots.size();
+      other.send(Collections.singletonList(new ParentVersionChange("node-b", 1903L, 1L, false)));
+      await(() -> !changesOf(1903L).isEmpty());
+      assertThat(changesOf(1903L), contains("1R"));
+      assertThat(snapshots.size(), is(cached - 1));
+    }
+    assertThat(changesOf(id), contains("1"));
+  }
+}
@@ -0,0 +1,212 @@
+package com.gpaglia.springlock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.gpaglia.springlock.entities.Child;
+import com.gpaglia.springlock.entities.GrandChild;
+import com.gpaglia.springlock.entities.Parent;
+import com.gpaglia.springlock.writebehind.WriteBehindBuffer;
+import com.gpaglia.springlock.writebehind.WriteBehindConflictEvent;
+import com.gpaglia.springlock.writebehind.WriteBehindProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * WriteBehindTest, in a context of its own where the buffer is flushed on demand.
+ */
+@SpringBootTest(properties = {
+    "springlock.write-behind.enabled=true",
+    "springlock.write-behind.flush-interval=1h"
+})
+public class WriteBehindTest {
+
+  @Autowired
+  private WriteBehindBuffer buffer;
+
+  @Autowired
+  private ConfigurableApplicationContext ctx;
+
+  @Autowired
+  private DataSource dataSource;
+
+  @Autowired
+  private PlatformTransactionManager txManager;
+
+  @Autowired
+  private EntityManagerFactory emf;
+
+  @PersistenceContext
+  private EntityManager em;
+
+  private TransactionTemplate tx;
+
+  @BeforeEach
+  public void setup() {
+    tx = new TransactionTemplate(txManager);
+  }
+
+  private void persistAggregate(Long id) {
+    tx.execute(status -> {
+      Parent p = new Parent(id, "Parent_" + id);
+      for (long c = 1; c <= 2; c++) {
+        Child child = new Child(id * 1000 + c, "Child_" + c);
+        child.setParent(p);
+        new GrandChild((id * 1000 + c) * 100 + 1, "GrandChild_1").setChild(child);
+      }
+      em.persist(p);
+      return null;
+    });
+  }
+
+  private <T> T find(Class<T> entityClass, Long id) {
+    return tx.execute(status -> em.find(entityClass, id));
+  }
+
+  @Test
+  public void coalesceTest() {
+    persistAggregate(1501L);
+    final Child c1 = find(Child.class, 1501001L);
+    final GrandChild gc = find(GrandChild.class, 150100201L);
+
+    buffer.rename(c1, "Renamed_1");
+    buffer.rename(c1, "Renamed_2");
+    buffer.rename(gc, "Renamed_3");
+    assertThat(buffer.pending(), is(2));
+
+    assertThat(buffer.flush(), is(2));
+    assertThat(buffer.pending(), is(0));
+    assertThat(buffer.flush(), is(0));
+
+    Child child = find(Child.class, 1501001L);
+    assertThat(child.getName(), is("Renamed_2"));
+    assertThat(child.getVersion(), is(c1.getVersion() + 1));
+    assertThat(find(GrandChild.class, 150100201L).getName(), is("Renamed_3"));
+    assertThat(find(Child.class, 1501002L).getVersion(), is(0L));
+
+    // the parent version is not touched
+    assertThat(find(Parent.class, 1501L).getVersion(), is(0L));
+
+    // nor can it be flushed within a transaction
+    assertThrows(IllegalStateException.class, () -> tx.execute(status -> buffer.flush()));
+  }
+
+  @Test
+  public void conflictTest() {
+    persistAggregate(1502L);
+    final Child stale = find(Child.class, 1502001L);
+
+    tx.execute(status -> {
+      em.find(Child.class, 1502001L).setName("Changed");
+      return null;
+    });
+
+    final List<WriteBehindConflictEvent> events = new CopyOnWriteArrayList<>();
+    ctx.addApplicationListener((ApplicationListener<WriteBehindConflictEvent>) events::add);
+
+    buffer.rename(stale, "Stale");
+    buffer.renameGrandChild(-1L, 0L, "Missing");
+    buffer.renameChild(1502002L, 0L, "Renamed");
+
+    assertThat(buffer.flush(), is(1));
+    assertThat(events.stream().map(WriteBehindConflictEvent::getId).collect(Collectors.toList()),
+        containsInAnyOrder(1502001L, -1L));
+    assertThat(find(Child.class, 1502001L).getName(), is("Changed"));
+    assertThat(find(Child.class, 1502002L).getName(), is("Renamed"));
+  }
+
+  @Test
+  public void renameDuringFlushTest() throws Exception {
+    final int rows = 20_000;
+    final long first = -1_000_001L;
+
+    // renames of missing rows, each one drained is published as a conflict
+    final Map<Long, String> drained = new ConcurrentHashMap<>();
+    ctx.addApplicationListener((ApplicationListener<WriteBehindConflictEvent>) e -> {
+      if (e.getId() <= first && e.getId() > first - rows) {
+        drained.put(e.getId(), e.getName());
+      }
+    });
+
+    final AtomicBoolean renaming = new AtomicBoolean(true);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // each row renamed twice in a row, while the buffer is being drained
+      Future<?> renamer = executor.submit(() -> {
+        try {
+          for (long id = first; id > first - rows; id--) {
+            buffer.renameChild(id, 0L, "First");
+            buffer.renameChild(id, 0L, "Last");
+          }
+        } finally {
+          renaming.set(false);
+        }
+      });
+      while (renaming.get()) {
+        buffer.flush();
+      }
+      renamer.get(60, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // the last rename of every row is flushed, none replaced in the buffer during a drain
+    buffer.flush();
+    assertThat(drained.size(), is(rows));
+    assertThat(drained.values().stream().filter(name -> !"Last".equals(name)).count(), is(0L));
+  }
+
+  @Test
+  public void closeTest() throws Exception {
+    persistAggregate(1503L);
+
+    WriteBehindProperties props = new WriteBehindProperties();
+    props.setFlushInterval(Duration.ofHours(1));
+    props.setMaxPending(2);
+    WriteBehindBuffer other = new WriteBehindBuffer(dataSource, txManager, emf, ctx, props);
+
+    // flushed early, as max-pending rows are buffered
+    other.renameChild(1503001L, 0L, "Early_1");
+    other.renameChild(1503002L, 0L, "Early_2");
+    for (int i = 0; i < 100 && other.pending() > 0; i++) {
+      Thread.sleep(50);
+    }
+    assertThat(other.pending(), is(0));
+
+    // flushed at close
+    other.renameGrandChild(150300101L, 0L, "Closed");
+    other.close();
+    assertThat(find(GrandChild.class, 150300101L).getName(), is("Closed"));
+    assertThrows(IllegalStateException.class,
+        () -> other.renameGrandChild(150300101L, 1L, "Late"));
+
+    assertThat(find(Child.class, 1503001L).getName(), is("Early_1"));
+    assertThat(find(Child.class, 1503002L).getName(), is("Early_2"));
+  }
+}
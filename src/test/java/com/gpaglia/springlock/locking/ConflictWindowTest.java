@@ -0,0 +1,72 @@
+package com.gpaglia.springlock.locking;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * ConflictWindowTest, on a window of 1000 ns split in 10 buckets of 100 ns.
+ */
+public class ConflictWindowTest {
+
+  private final ConflictWindow window = new ConflictWindow(1000L, 10, 0L);
+
+  @Test
+  public void emptyWindowTest() {
+    assertThat(window.attempts(0L), is(0L));
+    assertThat(window.conflictRate(0L), is(0.0));
+  }
+
+  @Test
+  public void rateTest() {
+    window.record(0L, true);
+    window.record(50L, false);
+    window.record(150L, false);
+    window.record(250L, true);
+
+    assertThat(window.attempts(300L), is(4L));
+    assertThat(window.conflictRate(300L), is(0.5));
+  }
+
+  @Test
+  public void slidingTest() {
+    window.record(0L, true);
+    window.record(50L, true);
+    window.record(500L, false);
+
+    // still within the window in the last bucket
+    assertThat(window.attempts(999L), is(3L));
+
+    // the first bucket recycled
+    assertThat(window.attempts(1000L), is(1L));
+    assertThat(window.conflictRate(1000L), is(0.0));
+
+    // and the sixth one
+    assertThat(window.attempts(1500L), is(0L));
+    assertThat(window.conflictRate(1500L), is(0.0));
+  }
+
+  @Test
+  public void longGapTest() {
+    window.record(0L, true);
+    window.record(900L, true);
+
+    // more than a whole window later, all the buckets are cleared at once
+    assertThat(window.attempts(100_000L), is(0L));
+
+    window.record(100_050L, true);
+    assertThat(window.attempts(100_050L), is(1L));
+    assertThat(window.conflictRate(100_050L), is(1.0));
+  }
+
+  @Test
+  public void earlierTimeTest() {
+    window.record(500L, true);
+
+    // a time before the current bucket, e.g. read on another thread, is counted in it
+    window.record(100L, false);
+    assertThat(window.attempts(200L), is(2L));
+    assertThat(window.conflictRate(500L), is(0.5));
+  }
+}
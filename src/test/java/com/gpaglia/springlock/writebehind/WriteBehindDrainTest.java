@@ -0,0 +1,100 @@
+package com.gpaglia.springlock.writebehind;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * WriteBehindDrainTest, on a buffer where a newer value of a row is put right after
+ * the drain reads the current one, as a rename arriving during a flush would.
+ */
+public class WriteBehindDrainTest {
+
+  /**
+   * A buffer putting {@code newer} for {@code id} once the drain has read its value.
+   */
+  private static final class RacingBuffer extends ConcurrentHashMap<Long, String> {
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String newer;
+
+    RacingBuffer(Long id, String newer) {
+      this.id = id;
+      this.newer = newer;
+    }
+
+    @Override
+    public Set<Map.Entry<Long, String>> entrySet() {
+      final Set<Map.Entry<Long, String>> entries = super.entrySet();
+      return new AbstractSet<Map.Entry<Long, String>>() {
+        @Override
+        public Iterator<Map.Entry<Long, String>> iterator() {
+          final Iterator<Map.Entry<Long, String>> it = entries.iterator();
+          return new Iterator<Map.Entry<Long, String>>() {
+            @Override
+            public boolean hasNext() {
+              return it.hasNext();
+            }
+
+            @Override
+            public Map.Entry<Long, String> next() {
+              final Map.Entry<Long, String> e = it.next();
+              if (e.getKey().equals(id) && !e.getValue().equals(newer)) {
+                put(id, newer);
+              }
+              return e;
+            }
+
+            @Override
+            public void remove() {
+              it.remove();
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return entries.size();
+        }
+      };
+    }
+  }
+
+  @Test
+  public void drainTest() {
+    final Map<Long, String> buffer = new ConcurrentHashMap<>();
+    buffer.put(1L, "Renamed_1");
+    buffer.put(2L, "Renamed_2");
+
+    assertThat(WriteBehindBuffer.drain(buffer), containsInAnyOrder("Renamed_1", "Renamed_2"));
+    assertThat(buffer.isEmpty(), is(true));
+    assertThat(WriteBehindBuffer.drain(buffer), is(empty()));
+  }
+
+  @Test
+  public void renameDuringDrainTest() {
+    final Map<Long, String> buffer = new RacingBuffer(1L, "Newer");
+    buffer.put(1L, "Older");
+    buffer.put(2L, "Renamed_2");
+
+    // the older rename, replaced meanwhile, is not drained: the newer one is left instead
+    final List<String> drained = WriteBehindBuffer.drain(buffer);
+    assertThat(drained, containsInAnyOrder("Renamed_2"));
+    assertThat(buffer.get(1L), is("Newer"));
+    assertThat(buffer.size(), is(1));
+
+    assertThat(WriteBehindBuffer.drain(buffer), containsInAnyOrder("Newer"));
+    assertThat(buffer.isEmpty(), is(true));
+  }
+}